@@ -5,23 +5,38 @@ import android.view.View;
 import android.widget.Button;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 
 import be.like.water.frida.ui.FridaFragment;
+import be.like.water.frida.viewmodel.FridaViewModel;
 
 /**
  * MainActivity 负责整个 App 的模块管理
  * - 点击 Frida 按钮加载 FridaFragment
  * - 隐藏主界面按钮
  * - 支持返回栈恢复按钮显示
+ * - 冷启动时提前创建 FridaViewModel，让 frida-server 状态在用户进入模块前就开始恢复和校验
  */
 public class MainActivity extends AppCompatActivity {
 
     private Button btnFrida; // 主界面 Frida 模块按钮
+    private boolean fullyDrawnReported = false; // 是否已上报 reportFullyDrawn
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main); // 加载主布局
+        StartupMetrics.trackFirstFrame(this); // 记录首帧耗时
+
+        // Activity 作用域的 ViewModel，FridaFragment 共用同一个实例
+        FridaViewModel fridaViewModel = new ViewModelProvider(this).get(FridaViewModel.class);
+        fridaViewModel.getStateLiveData().observe(this, state -> {
+            // 状态校验结束（成功或失败）即为可操作，通知系统统计完全显示耗时
+            if (state.isSettled() && !fullyDrawnReported) {
+                fullyDrawnReported = true;
+                reportFullyDrawn();
+            }
+        });
 
         btnFrida = findViewById(R.id.btnFrida); // 获取按钮控件
 
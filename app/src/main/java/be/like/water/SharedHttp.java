@@ -0,0 +1,41 @@
+package be.like.water;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+
+import be.like.water.core.OkHttpTransport;
+
+/**
+ * SharedHttp
+ * 进程内唯一的 HTTP 层，所有网络请求都走这里，共享连接池和磁盘缓存
+ * - 首次使用时才创建，不占用冷启动时间
+ * - 每次调用的耗时明细输出到 logcat（TAG = HttpMetrics）
+ */
+public final class SharedHttp {
+
+    private static final String TAG = "HttpMetrics";
+
+    private static volatile OkHttpTransport instance;
+
+    private SharedHttp() {
+    }
+
+    public static OkHttpTransport get(Context context) {
+        OkHttpTransport transport = instance;
+        if (transport == null) {
+            synchronized (SharedHttp.class) {
+                transport = instance;
+                if (transport == null) {
+                    transport = OkHttpTransport.builder()
+                            .cacheDir(new File(context.getApplicationContext().getCacheDir(), "http"))
+                            .build();
+                    transport.addMetricsListener(metrics -> Log.i(TAG, metrics.toString()));
+                    instance = transport;
+                }
+            }
+        }
+        return transport;
+    }
+}
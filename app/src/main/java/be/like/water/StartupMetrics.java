@@ -0,0 +1,72 @@
+package be.like.water;
+
+import android.app.Activity;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * StartupMetrics
+ * 记录冷启动的两个关键耗时（均从进程启动开始计时）
+ * - 首帧：MainActivity 第一次绘制完成
+ * - 可操作：frida-server 状态在后台校验完成，按钮对应的状态可信
+ * 每个指标只记录一次，结果输出到 logcat（TAG = StartupMetrics）
+ */
+public final class StartupMetrics {
+
+    private static final String TAG = "StartupMetrics";
+
+    private static long firstFrameMs = -1;
+    private static long actionableMs = -1;
+
+    private StartupMetrics() {
+    }
+
+    /**
+     * 在 Activity.onCreate 中调用，等第一帧绘制后记录首帧耗时
+     */
+    public static void trackFirstFrame(Activity activity) {
+        View decor = activity.getWindow().getDecorView();
+        decor.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decor.getViewTreeObserver().removeOnPreDrawListener(this);
+                // onPreDraw 时这一帧还没画完，post 到下一次消息循环再记录
+                decor.post(StartupMetrics::markFirstFrame);
+                return true;
+            }
+        });
+    }
+
+    public static synchronized void markFirstFrame() {
+        if (firstFrameMs >= 0) return;
+        firstFrameMs = sinceProcessStart();
+        Log.i(TAG, "首帧耗时: " + firstFrameMs + "ms");
+    }
+
+    /**
+     * @return 是否是第一次标记（调用方可据此决定是否 reportFullyDrawn）
+     */
+    public static synchronized boolean markActionable() {
+        if (actionableMs >= 0) return false;
+        actionableMs = sinceProcessStart();
+        Log.i(TAG, "可操作耗时: " + actionableMs + "ms");
+        return true;
+    }
+
+    /** 首帧耗时，未记录时为 -1 */
+    public static synchronized long getFirstFrameMs() {
+        return firstFrameMs;
+    }
+
+    /** 可操作耗时，未记录时为 -1 */
+    public static synchronized long getActionableMs() {
+        return actionableMs;
+    }
+
+    private static long sinceProcessStart() {
+        return SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+    }
+}
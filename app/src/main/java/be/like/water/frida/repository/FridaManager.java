@@ -7,288 +7,203 @@ import android.content.Context;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.util.Log;
 
 import androidx.annotation.RequiresPermission;
 import androidx.core.app.NotificationCompat;
 import androidx.core.app.NotificationManagerCompat;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-
-import org.tukaani.xz.XZInputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import be.like.water.SharedHttp;
+import be.like.water.core.FileStorage;
+import be.like.water.core.FridaEngine;
+import be.like.water.core.Platform;
+import be.like.water.core.ProgressListener;
+import be.like.water.core.ProvisionTarget;
+import be.like.water.core.ProvisioningQueue;
+import be.like.water.core.ShellResult;
+import be.like.water.core.SnapshotStore;
+import be.like.water.core.StateSnapshot;
+import be.like.water.core.SuShell;
 
 /**
  * FridaManager
- * 负责下载、启动和停止 frida-server
+ * FridaEngine 的 Android 适配层
+ * - 核心逻辑（下载、解压、安装、进程控制）在 :core 模块的 FridaEngine 中
+ * - 这里只负责：后台线程调度、把日志切回主线程、用通知栏显示下载进度
  * - 下载路径：app 私有目录 /files/frida/version/os/arch
- * - 启动前会拷贝到 /data/local/tmp 并赋予可执行权限
- * - 下载进度通过通知栏显示
+ * - 维护状态快照：启动时先读取上次保存的快照，再在后台用 shell 重新校验
  */
 public class FridaManager {
 
-    private Process fridaProcess; // 保存 frida-server 的进程对象
+    private static final String TAG = "FridaManager";
+
     private final Handler mainHandler = new Handler(Looper.getMainLooper()); // 主线程 Handler，用于回调 UI
     private final Context context;
+    private final FridaEngine engine;
+    private final SnapshotStore snapshotStore;
+
+    private volatile StateCallback stateCallback; // 状态快照更新回调（主线程）
+
+    // 状态校验专用的单线程，保证校验串行执行
+    private final ExecutorService stateExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "frida-revalidate");
+        t.setDaemon(true);
+        return t;
+    });
 
     // 通知相关常量
     private static final String CHANNEL_ID = "frida_download_channel";
     private static final int NOTIFICATION_ID = 1001;
 
-    // 是否正在下载标志位，避免并发下载
-    private volatile boolean isDownloading = false;
+    // 是否正在下载标志位，通知栏只有一个进度条，避免并发下载
+    private final AtomicBoolean isDownloading = new AtomicBoolean(false);
+
+    // 通知渠道是否已创建
+    private volatile boolean channelReady = false;
 
     public FridaManager(Context context) {
         this.context = context.getApplicationContext();
-        initNotificationChannel(); // 初始化通知渠道（Android 8.0+ 必须）
+        // 共享的 OkHttp 传输层在第一次下载时才创建，避免拖慢冷启动
+        this.engine = new FridaEngine(new SuShell(), url -> SharedHttp.get(this.context).get(url),
+                new FileStorage(new File(this.context.getFilesDir(), "frida")));
+        this.snapshotStore = new PrefsSnapshotStore(this.context);
+        // 通知渠道要跨进程调用系统服务，放到后台线程，不阻塞冷启动
+        new Thread(this::ensureNotificationChannel, "frida-init").start();
+    }
+
+    public FridaEngine getEngine() {
+        return engine;
     }
 
     /**
-     * 启动 frida-server
-     * 逻辑：
-     * 1. 检查 /data/local/tmp 是否已有 frida-server 文件
-     * 2. 没有则去 app 私有目录找，没有就下载并解压
-     * 3. 拷贝到 /data/local/tmp 并赋权限
-     * 4. 通过 su 执行启动 frida-server
+     * 启动 frida-server（具体流程见 FridaEngine.start）
+     * 需要下载时先占用 isDownloading，已有下载进行中则忽略本次请求
      */
     public void startFrida(String version, LogCallback callback) {
+        LogCallback ui = onMainThread(callback);
         new Thread(() -> {
-            try {
-                String os = getOs();       // 获取操作系统 (android/linux/windows)
-                String arch = getArch();   // 获取 CPU 架构 (arm64/arm/x86_64/x86)
-                String fileName = "frida-server-" + version + "-" + os + "-" + arch;
-
-                File tmpFile = new File("/data/local/tmp/", fileName);
-
-                if (!tmpFile.exists()) { // /data/local/tmp 下不存在，需处理下载逻辑
-                    File appDir = new File(context.getFilesDir(), "frida/" + version + "/" + os + "/" + arch);
-                    if (!appDir.exists()) appDir.mkdirs();
-
-                    File xzFile = new File(appDir, fileName + ".xz"); // 压缩包
-                    File fridaFile = new File(appDir, fileName);      // 解压后的可执行文件
-
-                    if (!fridaFile.exists()) { // app 私有目录也没有，需要下载
-                        callback.onLog("INFO", "开始下载 frida: " + fileName);
-                        try {
-                            downloadFrida(version, os, arch, xzFile, callback); // 下载并显示通知
-                        } catch (Exception e) {
-                            callback.onLog("ERROR", "下载失败: " + e.getMessage());
-                            updateNotificationFailed("下载失败");
-                            return;
-                        }
-
-                        // 解压 .xz 文件
-                        try (FileInputStream fis = new FileInputStream(xzFile);
-                             XZInputStream xzIn = new XZInputStream(fis);
-                             FileOutputStream fos = new FileOutputStream(fridaFile)) {
-
-                            byte[] buffer = new byte[8192];
-                            int n;
-                            while ((n = xzIn.read(buffer)) != -1) fos.write(buffer, 0, n);
-                        }
-                        callback.onLog("SUCCESS", "解压完成: " + fridaFile.getAbsolutePath());
-                        xzFile.delete(); // 删除压缩包
-                    }
-
-                    // 拷贝到 /data/local/tmp 并赋可执行权限
-                    Runtime.getRuntime().exec(new String[]{"su", "-c",
-                            "cp " + fridaFile.getAbsolutePath() + " " + tmpFile.getAbsolutePath()}).waitFor();
-                    Runtime.getRuntime().exec(new String[]{"su", "-c",
-                            "chmod 755 " + tmpFile.getAbsolutePath()}).waitFor();
-                    callback.onLog("SUCCESS", "已拷贝到 /data/local/tmp: " + tmpFile.getAbsolutePath());
-                } else {
-                    callback.onLog("INFO", "File exists in /data/local/tmp, 使用已存在文件.");
-                }
-
-                // 启动 frida-server（后台启动）
-                // 使用 nohup 和 & 让它在后台运行并不阻塞当前进程读取
-                String startCmd = tmpFile.getAbsolutePath() + " &";
-                Runtime.getRuntime().exec(new String[]{"su", "-c", startCmd});
-                callback.onLog("SUCCESS", "Frida 启动命令已执行: " + tmpFile.getName());
-
-                // 等待并用 ps 打印 frida-server 进程信息（尝试若干次，直到找到为止）
-                boolean found = false;
-                final int maxTries = 5;
-                for (int i = 0; i < maxTries; i++) {
-                    try {
-                        // 使用 su -c "ps -A | grep frida-server" 来支持管道
-                        Process psProc = Runtime.getRuntime().exec(new String[]{"su", "-c", "ps -A | grep frida-server"});
-                        BufferedReader psReader = new BufferedReader(new InputStreamReader(psProc.getInputStream()));
-                        String psLine;
-                        StringBuilder out = new StringBuilder();
-                        while ((psLine = psReader.readLine()) != null) {
-                            out.append(psLine).append("\n");
-                        }
-                        psProc.waitFor();
-
-                        String outStr = out.toString().trim();
-                        if (!outStr.isEmpty()) {
-                            // 打印所有匹配到的行
-                            String[] lines = outStr.split("\\r?\\n");
-                            for (String l : lines) {
-                                String finalLine = l;
-                                mainHandler.post(() -> callback.onLog("PS", finalLine));
-                            }
-                            found = true;
-                            break;
-                        }
-                    } catch (Exception ignore) {
-                        callback.onLog("WARN", ignore.getMessage());
-                    }
-
-                    // 未找到则睡眠 1s 再试（等待 frida-server 完全跑起来）
-                    try { Thread.sleep(1000); } catch (InterruptedException ignored) {}
-                }
-
-                if (!found) {
-                    callback.onLog("WARN", "未能在 ps 中找到 frida-server（尝试 " + maxTries + " 次）");
-                }
-
-
+            ProvisionTarget target = Platform.currentTarget(version);
+            boolean needsDownload = !engine.getStorage().isCached(target);
+            if (needsDownload && !isDownloading.compareAndSet(false, true)) {
+                ui.onLog("ERROR", "已有下载任务进行中，忽略本次请求");
+                return;
+            }
 
+            try {
+                engine.start(target, new NotificationProgressListener(ui), ui::onLog);
             } catch (Exception e) {
-                callback.onLog("ERROR",  e.getMessage());
+                ui.onLog("ERROR", e.getMessage());
                 e.printStackTrace();
+            } finally {
+                if (needsDownload) isDownloading.set(false);
             }
+            revalidate();
         }).start();
     }
 
 
+    /**
+     * 创建批量预下载队列，与 startFrida 共用同一份本地缓存
+     * 下载好的包会被 startFrida 直接复用
+     * @param parallelism    最大并行下载数
+     * @param bytesPerSecond 全局带宽上限（字节/秒），<= 0 表示不限速
+     */
+    public ProvisioningQueue createProvisioningQueue(int parallelism, long bytesPerSecond) {
+        return new ProvisioningQueue(engine, parallelism, bytesPerSecond);
+    }
+
+    /**
+     * 当前设备对应的下载目标，便于和其他架构一起批量提交
+     */
+    public ProvisionTarget currentTarget(String version) {
+        return Platform.currentTarget(version);
+    }
+
+
     /**
      * 停止 frida-server
      */
     public void stopFrida(LogCallback callback) {
+        LogCallback ui = onMainThread(callback);
         new Thread(() -> {
             try {
-                Process p = Runtime.getRuntime().exec(new String[]{"su", "-c", "pkill -9 frida-server"});
-                int code = p.waitFor();
-
-                // 读取可能的 stderr 用于更详细日志（可选）
-                BufferedReader errReader = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-                StringBuilder errSb = new StringBuilder();
-                String l;
-                while ((l = errReader.readLine()) != null) errSb.append(l).append('\n');
-                errReader.close();
-
-                if (code == 0) {
-                    mainHandler.post(() -> callback.onLog("SUCCESS", "frida-server 已停止"));
+                ShellResult result = engine.stop();
+
+                if (result.isSuccess()) {
+                    ui.onLog("SUCCESS", "frida-server 已停止");
                 } else {
                     // pkill 返回非0：可能是未找到进程或命令不可用
-                    final String errMsg = errSb.toString().trim();
-                    mainHandler.post(() -> callback.onLog("WARNING", "pkill 返回代码 " + code + (errMsg.isEmpty() ? "" : "，stderr: " + errMsg)));
+                    String errMsg = result.getStderr().trim();
+                    ui.onLog("WARNING", "pkill 返回代码 " + result.getExitCode() + (errMsg.isEmpty() ? "" : "，stderr: " + errMsg));
                 }
             } catch (Exception e) {
-                final String msg = e.getMessage() == null ? e.toString() : e.getMessage();
-                mainHandler.post(() -> callback.onLog("ERROR", "停止 Frida 失败: " + msg));
+                String msg = e.getMessage() == null ? e.toString() : e.getMessage();
+                ui.onLog("ERROR", "停止 Frida 失败: " + msg);
             }
+            revalidate();
         }).start();
     }
 
+    // ---------------- 状态快照 ----------------
 
     /**
-     * 下载 frida-server 压缩包，下载进度用通知显示
-     * - 避免并发下载 (isDownloading 标志)
-     * - 如果文件已存在则跳过
-     * - 下载中更新通知栏进度
-     * - 下载完成后发送完成通知
+     * 读取上次保存的状态快照（未校验），数据量很小，可在主线程调用
      */
-    @RequiresPermission(Manifest.permission.POST_NOTIFICATIONS)
-    private void downloadFrida(String version, String os, String arch, File destFile, LogCallback callback) throws Exception {
-        if (isDownloading) {
-            throw new IllegalStateException("已有下载任务进行中，忽略本次请求");
-        }
+    public StateSnapshot loadSnapshot() {
+        return snapshotStore.load();
+    }
 
-        isDownloading = true;
+    /**
+     * 设置状态更新回调，每次后台校验完成后在主线程回调
+     */
+    public void setStateCallback(StateCallback callback) {
+        this.stateCallback = callback;
+    }
 
+    /**
+     * 在后台重新校验状态（一次 su 调用），完成后保存快照并回调
+     * 所有校验在同一个线程中按提交顺序执行，较早的结果不会覆盖较新的结果
+     */
+    public void revalidate() {
         try {
-            // 如果文件已存在，直接跳过下载
-            if (destFile.exists() && destFile.length() > 0) {
-                callback.onLog("INFO", "已存在压缩包，跳过下载: " + destFile.getAbsolutePath());
-                updateNotificationFinished("已存在，无需下载");
-                return;
-            }
-
-            // 构造下载地址
-            String urlStr = "https://github.com/frida/frida/releases/download/" + version +
-                    "/frida-server-" + version + "-" + os + "-" + arch + ".xz";
-
-            callback.onLog("INFO", "Downloading: " + urlStr);
-            updateNotificationProgress(-1, "开始下载 Frida");
-
-            URL url = new URL(urlStr);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.connect();
-
-            int totalSize = conn.getContentLength(); // 文件总大小
-            int downloaded = 0;                      // 已下载字节数
-            int lastProgress = -1;                   // 上次通知的进度，避免频繁刷新
-
-            // 执行下载
-            try (InputStream in = conn.getInputStream(); FileOutputStream out = new FileOutputStream(destFile)) {
-                byte[] buffer = new byte[8192];
-                int read;
-                while ((read = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, read);
-                    downloaded += read;
-
-                    if (totalSize > 0) {
-                        int progress = (int) ((downloaded * 100L) / totalSize);
-                        if (progress != lastProgress) {
-                            lastProgress = progress;
-                            updateNotificationProgress(progress, "正在下载: " + progress + "%");
-                        }
-                    } else {
-                        updateNotificationProgress(-1, "正在下载...");
-                    }
-                }
-            }
-
-            // 下载完成
-            updateNotificationProgress(100, "下载完成");
-            mainHandler.post(() -> callback.onLog("SUCCESS", "Download finished"));
-        } catch (Exception e) {
-            updateNotificationFailed("下载失败");
-            mainHandler.post(() -> callback.onLog("ERROR", "下载失败: " + e.getMessage()));
-            throw e;
-        } finally {
-            isDownloading = false; // 下载结束（无论成功失败）都要重置
+            stateExecutor.execute(this::refreshState);
+        } catch (RejectedExecutionException ignored) {
+            // 已 shutdown（例如 startFrida 的线程在 ViewModel 销毁后才结束），无需再校验
         }
     }
 
     /**
-     * 获取 CPU 架构
+     * 释放状态校验线程（ViewModel 销毁时调用），之后不再接受新的校验
+     * 已提交的校验仍会执行完（结果照常保存），但不会再回调
      */
-    private String getArch() {
-        String arch = System.getProperty("os.arch");
-        if (arch == null) arch = "";
-        arch = arch.toLowerCase();
-        if (arch.contains("aarch64") || arch.contains("arm64")) return "arm64";
-        else if (arch.contains("arm")) return "arm";
-        else if (arch.contains("x86_64") || arch.contains("amd64")) return "x86_64";
-        else return "x86";
+    public void shutdown() {
+        stateCallback = null;
+        stateExecutor.shutdown();
     }
 
     /**
-     * 获取操作系统
+     * 采集当前状态并保存（在 stateExecutor 中调用）
+     * su 被拒绝或不可用时无法确认状态：回调上次保存的快照并附带错误，不覆盖持久化的内容
      */
-    private String getOs() {
-        try {
-            Class.forName("android.os.Build"); // Android 环境
-            return "android";
-        } catch (ClassNotFoundException e) {
-            String osName = System.getProperty("os.name");
-            if (osName == null) osName = "unknown";
-            osName = osName.toLowerCase();
-            if (osName.contains("linux")) return "linux";
-            else if (osName.contains("windows")) return "windows";
-            else if (osName.contains("mac")) return "darwin";
-            else return "unknown";
-        }
+    private void refreshState() {
+        StateSnapshot snapshot = engine.refreshState(snapshotStore);
+        if (snapshot.hasError()) Log.w(TAG, "校验 frida-server 状态失败: " + snapshot.getError());
+
+        StateCallback callback = stateCallback;
+        if (callback != null) mainHandler.post(() -> callback.onState(snapshot));
+    }
+
+    /**
+     * 包装回调，保证日志总是在主线程回调
+     */
+    private LogCallback onMainThread(LogCallback callback) {
+        return (type, message) -> mainHandler.post(() -> callback.onLog(type, message));
     }
 
     /**
@@ -298,12 +213,67 @@ public class FridaManager {
         void onLog(String type, String message); // type 可为 INFO / SUCCESS / WARNING / ERROR
     }
 
+    /**
+     * 状态快照回调接口
+     */
+    public interface StateCallback {
+        void onState(StateSnapshot snapshot);
+    }
+
+    /**
+     * 把 FridaEngine 的下载进度映射到通知栏（只观察，不影响下载流程）
+     * - 只在百分比变化时刷新通知，避免频繁刷新
+     */
+    private class NotificationProgressListener implements ProgressListener {
+
+        private final LogCallback log;
+        private int lastProgress = -1; // 上次通知的进度
+
+        NotificationProgressListener(LogCallback log) {
+            this.log = log;
+        }
+
+        @Override
+        public void onStart(ProvisionTarget target, String url) {
+            log.onLog("INFO", "Downloading: " + url);
+            updateNotificationProgress(-1, "开始下载 Frida");
+        }
+
+        @Override
+        public void onProgress(ProvisionTarget target, long downloaded, long total) {
+            if (total > 0) {
+                int progress = (int) ((downloaded * 100L) / total);
+                if (progress != lastProgress) {
+                    lastProgress = progress;
+                    updateNotificationProgress(progress, "正在下载: " + progress + "%");
+                }
+            } else if (lastProgress != -2) {
+                lastProgress = -2; // 未知大小只刷新一次
+                updateNotificationProgress(-1, "正在下载...");
+            }
+        }
+
+        @Override
+        public void onFinished(ProvisionTarget target, File file) {
+            updateNotificationProgress(100, "下载完成");
+            log.onLog("SUCCESS", "Download finished");
+        }
+
+        @Override
+        public void onFailed(ProvisionTarget target, Exception e) {
+            updateNotificationFailed("下载失败");
+            log.onLog("ERROR", "下载失败: " + e.getMessage());
+        }
+    }
+
     // ---------------- 通知栏相关 ----------------
 
     /**
      * 初始化通知渠道（仅 Android 8.0+）
+     * 构造时在后台线程调用；发通知前也会调用一次，保证渠道一定存在（重复创建无副作用）
      */
-    private void initNotificationChannel() {
+    private void ensureNotificationChannel() {
+        if (channelReady) return;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             CharSequence name = "Frida 下载";
             String description = "显示 frida-server 下载进度和状态";
@@ -315,6 +285,7 @@ public class FridaManager {
                 notificationManager.createNotificationChannel(channel);
             }
         }
+        channelReady = true;
     }
 
     /**
@@ -323,6 +294,7 @@ public class FridaManager {
      */
     @RequiresPermission(Manifest.permission.POST_NOTIFICATIONS)
     private void updateNotificationProgress(int progress, String contentText) {
+        ensureNotificationChannel();
         NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
                 .setSmallIcon(android.R.drawable.stat_sys_download)
                 .setContentTitle("Frida 下载")
@@ -340,28 +312,12 @@ public class FridaManager {
         NotificationManagerCompat.from(context).notify(NOTIFICATION_ID, builder.build());
     }
 
-    /**
-     * 下载完成通知
-     */
-    @RequiresPermission(Manifest.permission.POST_NOTIFICATIONS)
-    private void updateNotificationFinished(String contentText) {
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
-                .setSmallIcon(android.R.drawable.stat_sys_download_done)
-                .setContentTitle("Frida 下载")
-                .setContentText(contentText)
-                .setOnlyAlertOnce(true)
-                .setPriority(NotificationCompat.PRIORITY_LOW)
-                .setOngoing(false)
-                .setProgress(0, 0, false);
-
-        NotificationManagerCompat.from(context).notify(NOTIFICATION_ID, builder.build());
-    }
-
     /**
      * 下载失败通知
      */
     @RequiresPermission(Manifest.permission.POST_NOTIFICATIONS)
     private void updateNotificationFailed(String contentText) {
+        ensureNotificationChannel();
         NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
                 .setSmallIcon(android.R.drawable.stat_notify_error)
                 .setContentTitle("Frida 下载")
@@ -0,0 +1,69 @@
+package be.like.water.frida.repository;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import be.like.water.core.ProvisionTarget;
+import be.like.water.core.SnapshotStore;
+import be.like.water.core.StateSnapshot;
+
+/**
+ * PrefsSnapshotStore
+ * 把 StateSnapshot 保存在 frida_prefs（与版本号记录共用同一个文件）
+ * - 数据量很小，启动时在主线程读取即可让 UI 立即显示上次的状态
+ * - 写入使用 apply()，不阻塞调用线程
+ */
+public class PrefsSnapshotStore implements SnapshotStore {
+
+    private static final String PREFS_NAME = "frida_prefs";
+    private static final String KEY_CACHED = "state_cached";       // 逗号分隔的 version/os/arch
+    private static final String KEY_INSTALLED = "state_installed";
+    private static final String KEY_PID = "state_pid";
+    private static final String KEY_PORT = "state_port";
+    private static final String KEY_CAPTURED_AT = "state_captured_at";
+
+    private final SharedPreferences prefs;
+
+    public PrefsSnapshotStore(Context context) {
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public StateSnapshot load() {
+        long capturedAt = prefs.getLong(KEY_CAPTURED_AT, 0);
+        if (capturedAt == 0) return StateSnapshot.EMPTY;
+
+        List<ProvisionTarget> cached = new ArrayList<>();
+        for (String item : prefs.getString(KEY_CACHED, "").split(",")) {
+            ProvisionTarget target = ProvisionTarget.parse(item);
+            if (target != null) cached.add(target);
+        }
+
+        return new StateSnapshot(cached,
+                prefs.getString(KEY_INSTALLED, null),
+                prefs.getInt(KEY_PID, -1),
+                prefs.getInt(KEY_PORT, -1),
+                capturedAt,
+                false);
+    }
+
+    @Override
+    public void save(StateSnapshot snapshot) {
+        StringBuilder cached = new StringBuilder();
+        for (ProvisionTarget target : snapshot.getCachedTargets()) {
+            if (cached.length() > 0) cached.append(',');
+            cached.append(target);
+        }
+
+        prefs.edit()
+                .putString(KEY_CACHED, cached.toString())
+                .putString(KEY_INSTALLED, snapshot.getInstalledBinary())
+                .putInt(KEY_PID, snapshot.getPid())
+                .putInt(KEY_PORT, snapshot.getPort())
+                .putLong(KEY_CAPTURED_AT, snapshot.getCapturedAt())
+                .apply();
+    }
+}
@@ -6,6 +6,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -14,7 +15,11 @@ import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.text.DateFormat;
+import java.util.Date;
+
 import be.like.water.R;
+import be.like.water.core.StateSnapshot;
 import be.like.water.frida.viewmodel.FridaViewModel;
 
 /**
@@ -22,6 +27,7 @@ import be.like.water.frida.viewmodel.FridaViewModel;
  * - 渲染 UI
  * - 绑定用户事件（按钮点击）
  * - 观察 ViewModel 的 LiveData
+ * - 显示 frida-server 状态（先显示上次保存的快照，校验完成后刷新）
  */
 public class FridaFragment extends Fragment {
 
@@ -39,8 +45,8 @@ public class FridaFragment extends Fragment {
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
 
-        // 获取 ViewModel
-        viewModel = new ViewModelProvider(this).get(FridaViewModel.class);
+        // 获取 ViewModel（与 MainActivity 共用，冷启动时已开始恢复状态）
+        viewModel = new ViewModelProvider(requireActivity()).get(FridaViewModel.class);
 
         // 获取 UI 控件
         EditText etVersion = view.findViewById(R.id.etFridaVersion);
@@ -48,6 +54,7 @@ public class FridaFragment extends Fragment {
         Button btnStop = view.findViewById(R.id.btnStopFrida);
         Button btnClear = view.findViewById(R.id.btnClearLog);
         RecyclerView rvLog = view.findViewById(R.id.rvLog);
+        TextView tvState = view.findViewById(R.id.tvState);
 
         // 初始化 RecyclerView
         logAdapter = new LogAdapter();
@@ -82,11 +89,40 @@ public class FridaFragment extends Fragment {
         // 清空日志按钮点击事件
         btnClear.setOnClickListener(v -> viewModel.clearLogs());
 
+        // 点击状态栏手动重新校验
+        tvState.setOnClickListener(v -> viewModel.refreshState());
+
+        // 观察状态快照
+        viewModel.getStateLiveData().observe(getViewLifecycleOwner(), state -> tvState.setText(formatState(state)));
+
         // 观察 ViewModel 日志列表 LiveData
         viewModel.getLogListLiveData().observe(getViewLifecycleOwner(), logs -> {
             logAdapter.setLogs(logs);
             rvLog.scrollToPosition(logAdapter.getItemCount() - 1);
         });
     }
-}
 
+    /**
+     * 状态快照转为展示文本
+     */
+    private String formatState(StateSnapshot state) {
+        StringBuilder sb = new StringBuilder();
+        if (state.isRunning()) {
+            sb.append("运行中 (PID ").append(state.getPid()).append(", 端口 ").append(state.getPort()).append(")");
+        } else {
+            sb.append("未运行");
+        }
+        sb.append("\n已安装: ").append(state.getInstalledBinary() == null ? "无" : state.getInstalledBinary());
+        sb.append("\n本地缓存: ").append(state.getCachedTargets().isEmpty() ? "无" : state.getCachedTargets().toString());
+        if (!state.isValidated()) {
+            sb.append("\n");
+            if (state.getCapturedAt() > 0) {
+                String time = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.MEDIUM)
+                        .format(new Date(state.getCapturedAt()));
+                sb.append("上次记录于 ").append(time).append("，");
+            }
+            sb.append(state.hasError() ? "校验失败（点击重试）: " + state.getError() : "校验中…");
+        }
+        return sb.toString();
+    }
+}
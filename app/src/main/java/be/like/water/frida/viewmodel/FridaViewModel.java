@@ -15,17 +15,21 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 
+import be.like.water.StartupMetrics;
+import be.like.water.core.StateSnapshot;
 import be.like.water.frida.repository.FridaManager;
 
 /**
  * FridaViewModel
  * - 负责调用 FridaManager（下载/启动/停止 frida-server）
  * - 统一管理日志（带时间戳和分类前缀）
+ * - 暴露 frida-server 状态快照：创建时立即恢复上次保存的快照，再在后台校验
  */
 public class FridaViewModel extends AndroidViewModel {
 
     private final MutableLiveData<List<String>> logListLiveData = new MutableLiveData<>(); // 日志列表
     private final List<String> logList = new ArrayList<>(); // 内部日志数据源
+    private final MutableLiveData<StateSnapshot> stateLiveData = new MutableLiveData<>(); // 状态快照
     private final FridaManager fridaManager; // 核心逻辑类
 
     private final Map<String, Consumer<String>> logHandlerMap = new HashMap<>();
@@ -37,6 +41,16 @@ public class FridaViewModel extends AndroidViewModel {
         logHandlerMap.put("SUCCESS", this::addSuccess);
         logHandlerMap.put("ERROR", this::addError);
         logHandlerMap.put("WARNING", this::addWarning);
+
+        // 先恢复上次的快照让 UI 立即可用，再在后台校验
+        stateLiveData.setValue(fridaManager.loadSnapshot());
+        fridaManager.setStateCallback(this::onStateUpdated);
+        fridaManager.revalidate();
+    }
+
+    @Override
+    protected void onCleared() {
+        fridaManager.shutdown();
     }
 
 
@@ -47,6 +61,34 @@ public class FridaViewModel extends AndroidViewModel {
         return logListLiveData;
     }
 
+    /**
+     * 暴露状态快照 LiveData（validated = false 表示仍是上次保存的结果）
+     */
+    public LiveData<StateSnapshot> getStateLiveData() {
+        return stateLiveData;
+    }
+
+    /**
+     * 手动重新校验状态
+     */
+    public void refreshState() {
+        fridaManager.revalidate();
+    }
+
+    /**
+     * 后台校验结束（主线程回调），校验失败时 snapshot 带有 error
+     */
+    private void onStateUpdated(StateSnapshot snapshot) {
+        stateLiveData.setValue(snapshot);
+        if (snapshot.hasError()) {
+            addWarning("状态校验失败: " + snapshot.getError());
+        }
+        if (StartupMetrics.markActionable()) {
+            addInfo("启动耗时: 首帧 " + StartupMetrics.getFirstFrameMs() + "ms, 可操作 "
+                    + StartupMetrics.getActionableMs() + "ms");
+        }
+    }
+
     /**
      * 启动 frida-server
      */
@@ -0,0 +1,65 @@
+package be.like.water.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FileStorage
+ * 目录布局：rootDir/version/os/arch/frida-server-version-os-arch
+ * App 中 rootDir 为 /files/frida
+ */
+public class FileStorage implements Storage {
+
+    private final File rootDir;
+
+    public FileStorage(File rootDir) {
+        this.rootDir = rootDir;
+    }
+
+    public File getRootDir() {
+        return rootDir;
+    }
+
+    @Override
+    public File binaryFile(ProvisionTarget target) {
+        return new File(new File(rootDir, target.relativeDir()), target.fileName());
+    }
+
+    @Override
+    public File createTempFile(ProvisionTarget target, String suffix) throws IOException {
+        File dir = new File(rootDir, target.relativeDir());
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("无法创建目录: " + dir.getAbsolutePath());
+        }
+        return File.createTempFile(target.fileName() + ".", suffix, dir);
+    }
+
+    @Override
+    public boolean isCached(ProvisionTarget target) {
+        File f = binaryFile(target);
+        return f.exists() && f.length() > 0;
+    }
+
+    @Override
+    public List<ProvisionTarget> cachedTargets() {
+        List<ProvisionTarget> result = new ArrayList<>();
+        for (File versionDir : listDirs(rootDir)) {
+            for (File osDir : listDirs(versionDir)) {
+                for (File archDir : listDirs(osDir)) {
+                    // 名称不合法的目录不是本缓存写入的，直接跳过
+                    ProvisionTarget target = ProvisionTarget.parse(
+                            versionDir.getName() + "/" + osDir.getName() + "/" + archDir.getName());
+                    if (target != null && isCached(target)) result.add(target);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static File[] listDirs(File dir) {
+        File[] dirs = dir.listFiles(File::isDirectory);
+        return dirs == null ? new File[0] : dirs;
+    }
+}
@@ -0,0 +1,375 @@
+package be.like.water.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import org.tukaani.xz.XZInputStream;
+
+/**
+ * FridaEngine
+ * 与平台无关的 frida-server 核心逻辑：下载、解压、安装、启动、停止
+ * - 通过 Shell / HttpTransport / Storage / ProgressListener 注入平台相关部分
+ * - 所有方法都是同步阻塞的，线程调度由调用方（例如 Android 的 FridaManager）决定
+ */
+public class FridaEngine {
+
+    /** 设备上 frida-server 的安装目录 */
+    public static final String DEVICE_DIR = "/data/local/tmp";
+
+    private static final String PROBE_SEPARATOR = "--frida-probe--";
+    private static final int PS_MAX_TRIES = 5;
+    private static final long PS_RETRY_INTERVAL_MS = 1000;
+
+    private final Shell shell;
+    private final HttpTransport http;
+    private final Storage storage;
+
+    // 正在下载的目标，保证同一目标同时只有一个下载
+    private final Map<ProvisionTarget, Download> inFlight = new ConcurrentHashMap<>();
+
+    public FridaEngine(Shell shell, HttpTransport http, Storage storage) {
+        this.shell = shell;
+        this.http = http;
+        this.storage = storage;
+    }
+
+    public Shell getShell() {
+        return shell;
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    /**
+     * 目标在设备上的安装路径
+     */
+    public String devicePath(ProvisionTarget target) {
+        return DEVICE_DIR + "/" + target.fileName();
+    }
+
+    // ---------------- 下载 / 解压 ----------------
+
+    /**
+     * 确保目标已在本地缓存，不存在则下载并解压（不限速）
+     */
+    public File provision(ProvisionTarget target, ProgressListener listener) throws Exception {
+        return provision(target, listener, null);
+    }
+
+    /**
+     * 确保目标已在本地缓存，不存在则下载并解压
+     * - 同一目标同时只会有一个下载，其余调用方（startFrida、各个队列）等待它的结果
+     * - 等待方的 listener 同样会收到这个共享下载的进度
+     * - 下载和解压都先写临时文件，完成后再重命名，保证 Storage.isCached 判断可靠
+     * @param bandwidth 共享的限速器，null 表示不限速
+     */
+    public File provision(ProvisionTarget target, ProgressListener listener, TokenBucket bandwidth) throws Exception {
+        if (storage.isCached(target)) return storage.binaryFile(target);
+
+        Download download = new Download();
+        download.listeners.add(listener);
+        Download existing = inFlight.putIfAbsent(target, download);
+        if (existing != null) {
+            // 其他调用方正在下载同一目标，订阅其进度并等待结果
+            existing.listeners.add(listener);
+            try {
+                return existing.future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
+        }
+
+        try {
+            File file = downloadAndDecompress(target, download.listeners, bandwidth);
+            inFlight.remove(target, download);
+            download.future.complete(file);
+            return file;
+        } catch (Exception e) {
+            inFlight.remove(target, download);
+            download.future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 下载并解压到缓存（调用方已保证同一目标不会并发进入）
+     */
+    private File downloadAndDecompress(ProvisionTarget target, ProgressListener listener, TokenBucket bandwidth) throws Exception {
+        File fridaFile = storage.binaryFile(target);
+        if (storage.isCached(target)) return fridaFile; // 上一个下载恰好在此之前完成
+
+        File xzFile = null;
+        File partFile = null;
+
+        try {
+            xzFile = storage.createTempFile(target, ".xz.part");
+            partFile = storage.createTempFile(target, ".part");
+
+            download(target, xzFile, listener, bandwidth);
+            decompress(xzFile, partFile);
+
+            if (!partFile.renameTo(fridaFile)) {
+                throw new IOException("重命名失败: " + partFile.getAbsolutePath());
+            }
+            listener.onFinished(target, fridaFile);
+            return fridaFile;
+        } catch (Exception e) {
+            listener.onFailed(target, e);
+            throw e;
+        } finally {
+            if (xzFile != null) xzFile.delete();
+            if (partFile != null) partFile.delete();
+        }
+    }
+
+    /**
+     * 下载压缩包，每读到一块数据都先从限速器获取等量额度再写盘
+     */
+    private void download(ProvisionTarget target, File destFile, ProgressListener listener, TokenBucket bandwidth) throws Exception {
+        String url = target.downloadUrl();
+        listener.onStart(target, url);
+
+        try (HttpResponse response = http.get(url)) {
+            if (response.code() != 200) {
+                throw new IOException("HTTP " + response.code() + ": " + url);
+            }
+
+            long totalSize = response.contentLength();
+            long downloaded = 0;
+
+            try (InputStream in = response.body(); FileOutputStream out = new FileOutputStream(destFile)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    if (Thread.currentThread().isInterrupted()) throw new InterruptedException("下载已取消");
+                    if (bandwidth != null) bandwidth.acquire(read);
+                    out.write(buffer, 0, read);
+                    downloaded += read;
+                    listener.onProgress(target, downloaded, totalSize);
+                }
+            }
+        }
+    }
+
+    /**
+     * 解压 .xz 文件
+     */
+    private static void decompress(File xzFile, File destFile) throws IOException {
+        try (FileInputStream fis = new FileInputStream(xzFile);
+             XZInputStream xzIn = new XZInputStream(fis);
+             FileOutputStream fos = new FileOutputStream(destFile)) {
+
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = xzIn.read(buffer)) != -1) fos.write(buffer, 0, n);
+        }
+    }
+
+    // ---------------- 安装 / 进程控制 ----------------
+
+    /**
+     * 设备上是否已安装该目标
+     */
+    public boolean isInstalled(ProvisionTarget target) throws IOException, InterruptedException {
+        return shell.exec("[ -f " + devicePath(target) + " ]").isSuccess();
+    }
+
+    /**
+     * 通过 Shell.push 传到 /data/local/tmp 并赋可执行权限
+     */
+    public void install(ProvisionTarget target, File binary) throws IOException, InterruptedException {
+        String dest = devicePath(target);
+        shell.push(binary, dest);
+        ShellResult chmod = shell.exec("chmod 755 " + dest);
+        if (!chmod.isSuccess()) {
+            throw new IOException("赋权失败(" + chmod.getExitCode() + "): " + chmod.getStderr().trim());
+        }
+    }
+
+    /**
+     * 启动 frida-server
+     * 逻辑：
+     * 1. 检查 /data/local/tmp 是否已有 frida-server 文件
+     * 2. 没有则去本地缓存找，没有就下载并解压
+     * 3. 拷贝到 /data/local/tmp 并赋权限
+     * 4. 后台启动 frida-server，并用 ps 确认进程
+     * @return ps 中匹配到的 frida-server 进程行，未找到时为空列表
+     */
+    public List<String> start(ProvisionTarget target, ProgressListener listener, LogCallback log) throws Exception {
+        if (!isInstalled(target)) { // /data/local/tmp 下不存在，需处理下载逻辑
+            File fridaFile;
+            if (storage.isCached(target)) {
+                fridaFile = storage.binaryFile(target);
+            } else {
+                log.onLog("INFO", "开始下载 frida: " + target.fileName());
+                fridaFile = provision(target, listener);
+                log.onLog("SUCCESS", "解压完成: " + fridaFile.getAbsolutePath());
+            }
+
+            install(target, fridaFile);
+            log.onLog("SUCCESS", "已拷贝到 " + DEVICE_DIR + ": " + devicePath(target));
+        } else {
+            log.onLog("INFO", "File exists in " + DEVICE_DIR + ", 使用已存在文件.");
+        }
+
+        // 后台启动，不阻塞当前线程
+        shell.spawn(devicePath(target) + " &");
+        log.onLog("SUCCESS", "Frida 启动命令已执行: " + target.fileName());
+
+        // 等待并用 ps 查找 frida-server 进程（尝试若干次，直到找到为止）
+        for (int i = 0; i < PS_MAX_TRIES; i++) {
+            try {
+                List<String> lines = findServerProcesses();
+                if (!lines.isEmpty()) {
+                    for (String l : lines) log.onLog("PS", l);
+                    return lines;
+                }
+            } catch (IOException e) {
+                log.onLog("WARNING", e.getMessage());
+            }
+            // 未找到则睡眠再试（等待 frida-server 完全跑起来）
+            Thread.sleep(PS_RETRY_INTERVAL_MS);
+        }
+
+        log.onLog("WARNING", "未能在 ps 中找到 frida-server（尝试 " + PS_MAX_TRIES + " 次）");
+        return new ArrayList<>();
+    }
+
+    /**
+     * 停止 frida-server
+     */
+    public ShellResult stop() throws IOException, InterruptedException {
+        return shell.exec("pkill -9 frida-server");
+    }
+
+    /**
+     * 用 ps 查找 frida-server 进程
+     */
+    public List<String> findServerProcesses() throws IOException, InterruptedException {
+        return parseProcessLines(shell.exec("ps -A | grep frida-server").getStdout());
+    }
+
+    /**
+     * 重新采集当前状态，成功时保存到 store
+     * 失败（su 被拒绝、超时等）时返回 store 中上次保存的快照并附带错误，不覆盖已保存的内容
+     */
+    public StateSnapshot refreshState(SnapshotStore store) {
+        try {
+            StateSnapshot snapshot = probeState();
+            store.save(snapshot);
+            return snapshot;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            String msg = e.getMessage() == null ? e.toString() : e.getMessage();
+            return store.load().withError(msg);
+        }
+    }
+
+    /**
+     * 重新采集当前状态
+     * 进程和已安装文件合并为一次 shell 调用，减少 su 的开销
+     * @throws IOException su 被拒绝或超时：此时 stdout 中没有分隔符，无法确认任何状态
+     */
+    public StateSnapshot probeState() throws IOException, InterruptedException {
+        ShellResult result = shell.exec("ps -A -o PID,ARGS | grep frida-server; echo " + PROBE_SEPARATOR
+                + "; ls " + DEVICE_DIR + " | grep frida-server");
+        String out = result.getStdout();
+        int split = out.indexOf(PROBE_SEPARATOR);
+        if (split < 0) {
+            // grep 没有匹配时退出码也是 1，所以只能以分隔符是否输出来判断命令是否真的执行了
+            throw new IOException("状态采集失败(" + result.getExitCode() + "): " + result.getStderr().trim());
+        }
+        String psPart = out.substring(0, split);
+        String lsPart = out.substring(split + PROBE_SEPARATOR.length());
+
+        // ps -A -o PID,ARGS 输出格式：PID 可执行文件 参数...
+        int pid = -1;
+        int port = -1;
+        String runningName = null;
+        for (String line : parseProcessLines(psPart)) {
+            String[] cols = line.split("\\s+");
+            if (cols.length < 2) continue;
+            try {
+                pid = Integer.parseInt(cols[0]);
+            } catch (NumberFormatException ignored) {
+                continue; // 表头
+            }
+            runningName = cols[1].substring(cols[1].lastIndexOf('/') + 1);
+            port = parseListenPort(cols);
+            break;
+        }
+
+        // 优先取正在运行的那个文件，否则取第一个
+        String installed = null;
+        for (String l : lsPart.split("\\r?\\n")) {
+            String name = l.trim();
+            if (name.isEmpty()) continue;
+            if (installed == null) installed = name;
+            if (runningName != null && name.startsWith(runningName)) {
+                installed = name;
+                break;
+            }
+        }
+
+        return new StateSnapshot(storage.cachedTargets(), installed, pid, port, System.currentTimeMillis(), true);
+    }
+
+    /**
+     * 从 frida-server 的启动参数中读取监听端口
+     * 支持 -l ADDR、-lADDR、--listen ADDR、--listen=ADDR，ADDR 为 host、host:port 或 [v6]:port
+     * 没有 -l 或地址中不带端口时返回默认端口
+     * @param cols ps 行按空白拆分的结果：PID、可执行文件、参数...
+     */
+    private static int parseListenPort(String[] cols) {
+        String address = null;
+        for (int i = 2; i < cols.length; i++) {
+            String arg = cols[i];
+            if ((arg.equals("-l") || arg.equals("--listen")) && i + 1 < cols.length) {
+                address = cols[++i];
+            } else if (arg.startsWith("--listen=")) {
+                address = arg.substring("--listen=".length());
+            } else if (arg.startsWith("-l") && arg.length() > 2) {
+                address = arg.substring(2);
+            }
+        }
+        if (address == null) return StateSnapshot.DEFAULT_PORT;
+
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) return StateSnapshot.DEFAULT_PORT; // 只有 host
+        if (!address.startsWith("[") && address.indexOf(':') != colon) return StateSnapshot.DEFAULT_PORT; // 不带方括号的 IPv6 地址
+        if (address.startsWith("[") && address.lastIndexOf(']') > colon) return StateSnapshot.DEFAULT_PORT; // [v6] 不带端口
+        try {
+            return Integer.parseInt(address.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            return StateSnapshot.DEFAULT_PORT;
+        }
+    }
+
+    /**
+     * 进行中的下载：结果和所有等待方的进度监听
+     */
+    private static class Download {
+        final CompletableFuture<File> future = new CompletableFuture<>();
+        final ProgressMulticaster listeners = new ProgressMulticaster();
+    }
+
+    private static List<String> parseProcessLines(String output) {
+        List<String> lines = new ArrayList<>();
+        for (String l : output.split("\\r?\\n")) {
+            String line = l.trim();
+            if (!line.isEmpty() && !line.contains("grep")) lines.add(line);
+        }
+        return lines;
+    }
+}
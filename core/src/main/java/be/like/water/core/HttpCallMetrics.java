@@ -0,0 +1,94 @@
+package be.like.water.core;
+
+/**
+ * HttpCallMetrics
+ * 单次 HTTP 调用的耗时明细（毫秒），由 OkHttpTransport 在调用结束时产生
+ * - 复用连接池中的连接时没有 DNS / 连接 / TLS 阶段，对应值为 -1
+ * - 跟随重定向时同一调用可能建立多个连接，各阶段耗时为累加值
+ */
+public final class HttpCallMetrics {
+
+    private final String url;
+    private final String protocol;
+    private final long dnsMs;
+    private final long connectMs;
+    private final long tlsMs;
+    private final long ttfbMs;
+    private final long totalMs;
+    private final boolean connectionReused;
+    private final boolean cacheHit;
+    private final boolean failed;
+
+    public HttpCallMetrics(String url, String protocol, long dnsMs, long connectMs, long tlsMs,
+                           long ttfbMs, long totalMs, boolean connectionReused, boolean cacheHit, boolean failed) {
+        this.url = url;
+        this.protocol = protocol;
+        this.dnsMs = dnsMs;
+        this.connectMs = connectMs;
+        this.tlsMs = tlsMs;
+        this.ttfbMs = ttfbMs;
+        this.totalMs = totalMs;
+        this.connectionReused = connectionReused;
+        this.cacheHit = cacheHit;
+        this.failed = failed;
+    }
+
+    /** 发起请求的地址 */
+    public String getUrl() {
+        return url;
+    }
+
+    /** 协议，例如 h2 / http/1.1，未取得连接（命中缓存或连接前失败）时为 null */
+    public String getProtocol() {
+        return protocol;
+    }
+
+    /** DNS 解析耗时 */
+    public long getDnsMs() {
+        return dnsMs;
+    }
+
+    /** TCP 连接耗时（包含 TLS） */
+    public long getConnectMs() {
+        return connectMs;
+    }
+
+    /** TLS 握手耗时 */
+    public long getTlsMs() {
+        return tlsMs;
+    }
+
+    /** 首字节时间：从调用开始到收到响应头 */
+    public long getTtfbMs() {
+        return ttfbMs;
+    }
+
+    /** 调用总耗时（包含读取响应体） */
+    public long getTotalMs() {
+        return totalMs;
+    }
+
+    /** 是否复用了连接池中的连接 */
+    public boolean isConnectionReused() {
+        return connectionReused;
+    }
+
+    /** 是否命中 HTTP 磁盘缓存 */
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    @Override
+    public String toString() {
+        return url + " " + (protocol != null ? protocol : cacheHit ? "cache" : "-")
+                + " dns=" + dnsMs + "ms connect=" + connectMs + "ms tls=" + tlsMs
+                + "ms ttfb=" + ttfbMs + "ms total=" + totalMs + "ms"
+                + (connectionReused ? " reused" : "")
+                + (cacheHit ? " cache-hit" : "")
+                + (failed ? " failed" : "");
+    }
+}
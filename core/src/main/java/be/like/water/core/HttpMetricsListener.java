@@ -0,0 +1,8 @@
+package be.like.water.core;
+
+/**
+ * HTTP 调用耗时回调（在网络线程调用）
+ */
+public interface HttpMetricsListener {
+    void onCallMetrics(HttpCallMetrics metrics);
+}
@@ -0,0 +1,23 @@
+package be.like.water.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * HTTP 响应
+ */
+public interface HttpResponse extends Closeable {
+
+    /** 状态码 */
+    int code();
+
+    /** 响应体长度，未知时返回 -1 */
+    long contentLength();
+
+    /** 响应体 */
+    InputStream body() throws IOException;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,15 @@
+package be.like.water.core;
+
+import java.io.IOException;
+
+/**
+ * HttpTransport
+ * 网络下载的抽象，默认实现为 UrlConnectionTransport
+ */
+public interface HttpTransport {
+
+    /**
+     * 发起 GET 请求，调用方负责关闭返回的 HttpResponse
+     */
+    HttpResponse get(String url) throws IOException;
+}
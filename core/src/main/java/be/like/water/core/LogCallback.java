@@ -0,0 +1,9 @@
+package be.like.water.core;
+
+/**
+ * 日志回调接口
+ * type 可为 INFO / SUCCESS / WARNING / ERROR / PS
+ */
+public interface LogCallback {
+    void onLog(String type, String message);
+}
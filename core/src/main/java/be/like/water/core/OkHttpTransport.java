@@ -0,0 +1,327 @@
+package be.like.water.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * OkHttpTransport
+ * 基于 OkHttp 的共享 HTTP 层，整个进程只需要一个实例
+ * - 连接池 + HTTP/2，多次下载复用同一连接
+ * - 缓存重定向结果：GitHub Release 地址每次都会 302 到 CDN，短时间内直接请求 CDN 地址，
+ *   CDN 返回失败（签名过期等）时丢弃缓存并回到原地址重新解析
+ * - 有上限的磁盘缓存，只缓存小的元数据响应，大文件（frida-server 压缩包）不落缓存
+ * - 每次调用结束通过 HttpMetricsListener 输出 DNS / 连接 / TLS / 首字节耗时
+ */
+public class OkHttpTransport implements HttpTransport {
+
+    public static final long DEFAULT_CONNECT_TIMEOUT_MS = 10_000;
+    public static final long DEFAULT_READ_TIMEOUT_MS = 30_000;
+    public static final long DEFAULT_CACHE_SIZE = 5L * 1024 * 1024;       // 磁盘缓存上限 5MB
+    public static final long DEFAULT_MAX_CACHEABLE_BYTES = 256L * 1024;   // 单个响应超过 256KB 不缓存
+    public static final long DEFAULT_REDIRECT_TTL_MS = 5 * 60_000;        // GitHub CDN 签名地址有效期较短
+
+    private final OkHttpClient client;
+    private final long redirectTtlMs;
+    private final Map<String, CachedRedirect> redirects = new ConcurrentHashMap<>();
+    private final List<HttpMetricsListener> metricsListeners = new CopyOnWriteArrayList<>();
+
+    private OkHttpTransport(Builder builder) {
+        this.redirectTtlMs = builder.redirectTtlMs;
+
+        OkHttpClient.Builder b = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(builder.connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(builder.readTimeoutMs, TimeUnit.MILLISECONDS)
+                .followRedirects(true)
+                .followSslRedirects(true)
+                .eventListenerFactory(call -> new MetricsEventListener());
+
+        if (builder.cacheDir != null) {
+            b.cache(new Cache(builder.cacheDir, builder.cacheSize));
+            b.addNetworkInterceptor(cacheOnlySmallResponses(builder.maxCacheableBytes));
+        }
+        this.client = b.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 添加耗时监听
+     */
+    public void addMetricsListener(HttpMetricsListener listener) {
+        metricsListeners.add(listener);
+    }
+
+    public void removeMetricsListener(HttpMetricsListener listener) {
+        metricsListeners.remove(listener);
+    }
+
+    @Override
+    public HttpResponse get(String url) throws IOException {
+        CachedRedirect cached = redirects.get(url);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+            try {
+                Response response = execute(cached.location);
+                if (response.isSuccessful()) return wrap(response);
+
+                // 缓存的地址已失效（签名过期等），回到原地址重新解析
+                response.close();
+            } catch (IOException e) {
+                // CDN 主机不可达（DNS / 连接 / TLS 失败），同样回到原地址
+            }
+        }
+        redirects.remove(url);
+
+        Response response = execute(url);
+        String finalUrl = response.request().url().toString();
+        if (response.isSuccessful() && response.priorResponse() != null && !finalUrl.equals(url)) {
+            redirects.put(url, new CachedRedirect(finalUrl, System.currentTimeMillis() + redirectTtlMs));
+        }
+        return wrap(response);
+    }
+
+    private Response execute(String url) throws IOException {
+        Request request = new Request.Builder().url(url).get().build();
+        return client.newCall(request).execute();
+    }
+
+    private static HttpResponse wrap(Response response) {
+        return new HttpResponse() {
+            @Override
+            public int code() {
+                return response.code();
+            }
+
+            @Override
+            public long contentLength() {
+                ResponseBody body = response.body();
+                return body == null ? -1 : body.contentLength();
+            }
+
+            @Override
+            public InputStream body() throws IOException {
+                ResponseBody body = response.body();
+                if (body == null) throw new IOException("响应体为空");
+                return body.byteStream();
+            }
+
+            @Override
+            public void close() {
+                response.close();
+            }
+        };
+    }
+
+    /**
+     * 网络拦截器：大于上限或长度未知的二进制响应标记为 no-store，避免把压缩包写进磁盘缓存
+     */
+    private static Interceptor cacheOnlySmallResponses(long maxCacheableBytes) {
+        return chain -> {
+            Response response = chain.proceed(chain.request());
+            ResponseBody body = response.body();
+            if (body == null) return response;
+
+            long length = body.contentLength();
+            MediaType type = body.contentType();
+            boolean small = length >= 0
+                    ? length <= maxCacheableBytes
+                    : type != null && ("json".equals(type.subtype()) || "text".equals(type.type()));
+            if (small) return response;
+
+            return response.newBuilder()
+                    .header("Cache-Control", "no-store")
+                    .removeHeader("Pragma")
+                    .build();
+        };
+    }
+
+    private static final class CachedRedirect {
+        final String location;
+        final long expiresAt;
+
+        CachedRedirect(String location, long expiresAt) {
+            this.location = location;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * 每个调用一个实例，累计各阶段耗时，调用结束时回调 HttpMetricsListener
+     */
+    private class MetricsEventListener extends EventListener {
+
+        private String url;
+        private String protocol;
+        private long callStart;
+        private long dnsStart, connectStart, tlsStart;
+        private long dnsMs = -1, connectMs = -1, tlsMs = -1, ttfbMs = -1;
+        private boolean cacheHit;
+        private boolean connecting;       // 已开始建立新连接，尚未被 connectionAcquired 消费
+        private boolean connectionReused; // 最近一次取得的连接来自连接池
+
+        @Override
+        public void callStart(Call call) {
+            url = call.request().url().toString();
+            callStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            dnsMs = add(dnsMs, dnsStart);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectStart = System.nanoTime();
+            connecting = true;
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            tlsStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            tlsMs = add(tlsMs, tlsStart);
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            connectMs = add(connectMs, connectStart);
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                                  Protocol protocol, IOException ioe) {
+            connectMs = add(connectMs, connectStart);
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            protocol = connection.protocol().toString();
+            // 取得连接前没有经历 connectStart，说明来自连接池（跟随重定向时以最后一次为准）
+            connectionReused = !connecting;
+            connecting = false;
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            // 跟随重定向时以最后一个响应为准
+            ttfbMs = elapsedMs(callStart);
+        }
+
+        @Override
+        public void cacheHit(Call call, Response cachedResponse) {
+            cacheHit = true;
+            ttfbMs = elapsedMs(callStart);
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            emit(false);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            emit(true);
+        }
+
+        private void emit(boolean failed) {
+            if (metricsListeners.isEmpty()) return;
+            HttpCallMetrics metrics = new HttpCallMetrics(url, protocol, dnsMs, connectMs, tlsMs,
+                    ttfbMs, elapsedMs(callStart), connectionReused, cacheHit, failed);
+            for (HttpMetricsListener listener : metricsListeners) listener.onCallMetrics(metrics);
+        }
+
+        private long add(long total, long startNanos) {
+            return Math.max(total, 0) + elapsedMs(startNanos);
+        }
+
+        private long elapsedMs(long startNanos) {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * OkHttpTransport 构建器
+     */
+    public static class Builder {
+        private File cacheDir;
+        private long cacheSize = DEFAULT_CACHE_SIZE;
+        private long maxCacheableBytes = DEFAULT_MAX_CACHEABLE_BYTES;
+        private long connectTimeoutMs = DEFAULT_CONNECT_TIMEOUT_MS;
+        private long readTimeoutMs = DEFAULT_READ_TIMEOUT_MS;
+        private long redirectTtlMs = DEFAULT_REDIRECT_TTL_MS;
+
+        /** 磁盘缓存目录，不设置则不启用磁盘缓存 */
+        public Builder cacheDir(File cacheDir) {
+            this.cacheDir = cacheDir;
+            return this;
+        }
+
+        /** 磁盘缓存总上限（字节） */
+        public Builder cacheSize(long cacheSize) {
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /** 单个响应可缓存的最大长度（字节） */
+        public Builder maxCacheableBytes(long maxCacheableBytes) {
+            this.maxCacheableBytes = maxCacheableBytes;
+            return this;
+        }
+
+        public Builder connectTimeoutMs(long connectTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+            return this;
+        }
+
+        public Builder readTimeoutMs(long readTimeoutMs) {
+            this.readTimeoutMs = readTimeoutMs;
+            return this;
+        }
+
+        /** 重定向结果的缓存时长 */
+        public Builder redirectTtlMs(long redirectTtlMs) {
+            this.redirectTtlMs = redirectTtlMs;
+            return this;
+        }
+
+        public OkHttpTransport build() {
+            return new OkHttpTransport(this);
+        }
+    }
+}
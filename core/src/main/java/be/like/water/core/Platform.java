@@ -0,0 +1,49 @@
+package be.like.water.core;
+
+/**
+ * Platform
+ * 识别当前运行环境对应的 frida-server 系统和架构
+ */
+public final class Platform {
+
+    private Platform() {
+    }
+
+    /**
+     * 获取 CPU 架构 (arm64/arm/x86_64/x86)
+     */
+    public static String arch() {
+        String arch = System.getProperty("os.arch");
+        if (arch == null) arch = "";
+        arch = arch.toLowerCase();
+        if (arch.contains("aarch64") || arch.contains("arm64")) return "arm64";
+        else if (arch.contains("arm")) return "arm";
+        else if (arch.contains("x86_64") || arch.contains("amd64")) return "x86_64";
+        else return "x86";
+    }
+
+    /**
+     * 获取操作系统 (android/linux/windows/darwin)
+     */
+    public static String os() {
+        try {
+            Class.forName("android.os.Build"); // Android 环境
+            return "android";
+        } catch (ClassNotFoundException e) {
+            String osName = System.getProperty("os.name");
+            if (osName == null) osName = "unknown";
+            osName = osName.toLowerCase();
+            if (osName.contains("linux")) return "linux";
+            else if (osName.contains("windows")) return "windows";
+            else if (osName.contains("mac")) return "darwin";
+            else return "unknown";
+        }
+    }
+
+    /**
+     * 当前环境对应的下载目标
+     */
+    public static ProvisionTarget currentTarget(String version) {
+        return new ProvisionTarget(version, os(), arch());
+    }
+}
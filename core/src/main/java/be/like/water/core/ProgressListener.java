@@ -0,0 +1,33 @@
+package be.like.water.core;
+
+import java.io.File;
+
+/**
+ * ProgressListener
+ * 单个目标的下载进度回调（在下载线程调用）
+ * App 中用于更新通知栏，主机端工具可以打印到控制台
+ */
+public interface ProgressListener {
+
+    ProgressListener NONE = new ProgressListener() {
+    };
+
+    /** 开始下载 */
+    default void onStart(ProvisionTarget target, String url) {
+    }
+
+    /**
+     * 下载进度
+     * @param total 总字节数，未知时为 -1
+     */
+    default void onProgress(ProvisionTarget target, long downloaded, long total) {
+    }
+
+    /** 下载并解压完成 */
+    default void onFinished(ProvisionTarget target, File file) {
+    }
+
+    /** 下载失败 */
+    default void onFailed(ProvisionTarget target, Exception e) {
+    }
+}
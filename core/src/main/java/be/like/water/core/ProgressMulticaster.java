@@ -0,0 +1,76 @@
+package be.like.water.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ProgressMulticaster
+ * 把同一个下载的进度转发给所有订阅者（共享下载时每个等待方都能看到字节进度）
+ * - 中途加入的订阅者会先收到已发生的 onStart / 最近一次 onProgress / 结束事件
+ * - 事件在锁内按顺序分发，订阅者不会漏掉或重复收到同一段进度
+ * - 单个订阅者抛出的异常不影响下载和其他订阅者
+ */
+class ProgressMulticaster implements ProgressListener {
+
+    private final List<ProgressListener> listeners = new ArrayList<>();
+
+    private ProvisionTarget target; // 首个事件时记录，补发时使用
+    private String url;             // onStart 的地址，未开始时为 null
+    private long downloaded;
+    private long total = -1;
+    private boolean hasProgress;
+    private File finishedFile;
+    private Exception failure;
+
+    /**
+     * 添加订阅者，并补发它错过的事件
+     */
+    synchronized void add(ProgressListener listener) {
+        if (listener == null || listener == ProgressListener.NONE) return;
+        listeners.add(listener);
+        ProvisionTarget target = this.target;
+        if (target == null) return;
+        if (url != null) safely(() -> listener.onStart(target, url));
+        if (hasProgress) safely(() -> listener.onProgress(target, downloaded, total));
+        if (finishedFile != null) safely(() -> listener.onFinished(target, finishedFile));
+        if (failure != null) safely(() -> listener.onFailed(target, failure));
+    }
+
+    @Override
+    public synchronized void onStart(ProvisionTarget target, String url) {
+        this.target = target;
+        this.url = url;
+        for (ProgressListener l : listeners) safely(() -> l.onStart(target, url));
+    }
+
+    @Override
+    public synchronized void onProgress(ProvisionTarget target, long downloaded, long total) {
+        this.target = target;
+        this.downloaded = downloaded;
+        this.total = total;
+        this.hasProgress = true;
+        for (ProgressListener l : listeners) safely(() -> l.onProgress(target, downloaded, total));
+    }
+
+    @Override
+    public synchronized void onFinished(ProvisionTarget target, File file) {
+        this.target = target;
+        this.finishedFile = file;
+        for (ProgressListener l : listeners) safely(() -> l.onFinished(target, file));
+    }
+
+    @Override
+    public synchronized void onFailed(ProvisionTarget target, Exception e) {
+        this.target = target;
+        this.failure = e;
+        for (ProgressListener l : listeners) safely(() -> l.onFailed(target, e));
+    }
+
+    private static void safely(Runnable call) {
+        try {
+            call.run();
+        } catch (RuntimeException ignored) {
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package be.like.water.core;
+
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * ProvisionTarget
+ * 描述一个需要预先准备的 frida-server 包：(version, os, arch)
+ * - 作为批量下载队列的去重键（equals / hashCode）
+ * - 负责拼接文件名、下载地址和本地缓存的相对路径
+ * - 各字段会被拼进 su -c 命令和缓存路径，只允许字母、数字和 . _ -
+ */
+public final class ProvisionTarget {
+
+    private static final Pattern PART = Pattern.compile("[A-Za-z0-9._-]+");
+
+    private final String version;
+    private final String os;
+    private final String arch;
+
+    public ProvisionTarget(String version, String os, String arch) {
+        this.version = check("version", version);
+        this.os = check("os", os);
+        this.arch = check("arch", arch);
+    }
+
+    /**
+     * 拒绝空值、路径穿越（. / ..）和 shell 元字符
+     */
+    private static String check(String name, String value) {
+        if (value == null || value.trim().isEmpty()) throw new IllegalArgumentException(name + " 不能为空");
+        String v = value.trim();
+        if (!PART.matcher(v).matches() || v.equals(".") || v.equals("..")) {
+            throw new IllegalArgumentException(name + " 只能包含字母、数字和 . _ -: " + v);
+        }
+        return v;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getOs() {
+        return os;
+    }
+
+    public String getArch() {
+        return arch;
+    }
+
+    /**
+     * 解压后的可执行文件名，例如 frida-server-17.3.2-android-arm64
+     */
+    public String fileName() {
+        return "frida-server-" + version + "-" + os + "-" + arch;
+    }
+
+    /**
+     * 相对于缓存根目录的子目录：version/os/arch（与 FridaManager 的目录布局一致）
+     */
+    public String relativeDir() {
+        return version + "/" + os + "/" + arch;
+    }
+
+    /**
+     * GitHub Release 下载地址
+     */
+    public String downloadUrl() {
+        return "https://github.com/frida/frida/releases/download/" + version + "/" + fileName() + ".xz";
+    }
+
+    /**
+     * 解析 toString() 的输出 version/os/arch，格式不对时返回 null
+     */
+    public static ProvisionTarget parse(String value) {
+        if (value == null) return null;
+        String[] parts = value.trim().split("/");
+        if (parts.length != 3) return null;
+        try {
+            return new ProvisionTarget(parts[0], parts[1], parts[2]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ProvisionTarget)) return false;
+        ProvisionTarget that = (ProvisionTarget) o;
+        return version.equals(that.version) && os.equals(that.os) && arch.equals(that.arch);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(version, os, arch);
+    }
+
+    @Override
+    public String toString() {
+        return version + "/" + os + "/" + arch;
+    }
+}
@@ -0,0 +1,314 @@
+package be.like.water.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ProvisioningQueue
+ * 批量预下载多个版本 / 系统 / 架构的 frida-server，供无网络设备离线推送
+ * - 同一批次内重复的目标只处理一次，已在本地缓存的目标直接跳过
+ * - 不同批次提交了同一个目标时共享同一个下载任务，不会重复下载，字节进度同样计入每个批次
+ * - 最多 parallelism 个目标并行下载，所有下载共享一个令牌桶做全局限速
+ * - 通过 ProvisionCallback 汇报整体进度（回调在工作线程执行，UI 需自行切线程）
+ * - 下载、解压和缓存判断都委托给 FridaEngine，与单次启动共用同一份本地缓存
+ */
+public class ProvisioningQueue {
+
+    private static final long PROGRESS_INTERVAL_NANOS = 200_000_000L; // 进度回调最小间隔 200ms
+
+    private final FridaEngine engine;
+    private final ExecutorService executor;
+    private final TokenBucket bandwidth;
+
+    // 正在处理中的目标，用于跨批次去重
+    private final Map<ProvisionTarget, ProvisionTask> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param engine         负责实际下载和解压
+     * @param parallelism    最大并行下载数
+     * @param bytesPerSecond 全局带宽上限（字节/秒），<= 0 表示不限速
+     */
+    public ProvisioningQueue(FridaEngine engine, int parallelism, long bytesPerSecond) {
+        if (parallelism <= 0) throw new IllegalArgumentException("parallelism 必须大于 0");
+        this.engine = engine;
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "frida-provision");
+            t.setDaemon(true);
+            return t;
+        });
+        this.bandwidth = new TokenBucket(bytesPerSecond);
+    }
+
+    /**
+     * 目标在本地缓存中的可执行文件路径
+     */
+    public File cachedFile(ProvisionTarget target) {
+        return engine.getStorage().binaryFile(target);
+    }
+
+    /**
+     * 目标是否已在本地缓存
+     */
+    public boolean isCached(ProvisionTarget target) {
+        return engine.getStorage().isCached(target);
+    }
+
+    /**
+     * 提交一批目标
+     * @return 整批结束（无论成功失败）时完成的 Future
+     */
+    public CompletableFuture<BatchResult> submit(Collection<ProvisionTarget> targets, ProvisionCallback callback) {
+        Set<ProvisionTarget> unique = new LinkedHashSet<>(targets); // 批次内去重，保持提交顺序
+        BatchProgress progress = new BatchProgress(unique.size(), callback);
+        Map<ProvisionTarget, CompletableFuture<File>> futures = new LinkedHashMap<>();
+
+        for (ProvisionTarget target : unique) {
+            if (isCached(target)) {
+                progress.finished(target, cachedFile(target), true);
+                continue;
+            }
+            futures.put(target, enqueue(target, progress));
+        }
+
+        BatchResult result = new BatchResult();
+        for (ProvisionTarget target : unique) {
+            if (!futures.containsKey(target)) result.cached.add(target);
+        }
+
+        List<CompletableFuture<?>> tracked = new ArrayList<>();
+        for (Map.Entry<ProvisionTarget, CompletableFuture<File>> entry : futures.entrySet()) {
+            ProvisionTarget target = entry.getKey();
+            // 下载结果只由 Future 决定，之后才通知回调，回调抛出的异常不会把成功改成失败
+            tracked.add(entry.getValue().handle((file, error) -> {
+                synchronized (result) {
+                    if (error == null) {
+                        result.downloaded.add(target);
+                    } else {
+                        result.failed.put(target, unwrap(error));
+                    }
+                }
+                if (error == null) progress.finished(target, file, false);
+                else progress.failed(target, error);
+                return null;
+            }));
+        }
+
+        return CompletableFuture.allOf(tracked.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            progress.batchFinished(result);
+            return result;
+        });
+    }
+
+    /**
+     * 关闭队列，中断正在进行的下载
+     * 尚未开始的目标直接按失败处理，保证所有批次的 Future 都会结束
+     */
+    public void shutdown() {
+        for (Runnable pending : executor.shutdownNow()) {
+            if (pending instanceof ProvisionTask) {
+                ((ProvisionTask) pending).fail(new IllegalStateException("队列已关闭"));
+            }
+        }
+    }
+
+    /**
+     * 将目标加入线程池；若其他批次已在处理同一目标，则复用其 Future 并订阅其字节进度
+     */
+    private CompletableFuture<File> enqueue(ProvisionTarget target, BatchProgress progress) {
+        ProvisionTask task = new ProvisionTask(target);
+        task.listeners.add(progress.byteListener());
+        ProvisionTask existing = inFlight.putIfAbsent(target, task);
+        if (existing != null) {
+            existing.listeners.add(progress.byteListener()); // 中途加入时会补发已下载的字节数
+            return existing.future;
+        }
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.fail(new IllegalStateException("队列已关闭", e));
+        }
+        return task.future;
+    }
+
+    /**
+     * 单个目标的下载任务
+     * 无论执行、被拒绝还是在关闭时被丢弃，都会移除 inFlight 记录并结束 Future
+     * 批次进度由 submit 中注册在 Future 上的回调统一处理，字节进度分发给所有订阅的批次
+     */
+    private class ProvisionTask implements Runnable {
+        private final ProvisionTarget target;
+        private final CompletableFuture<File> future = new CompletableFuture<>();
+        private final ProgressMulticaster listeners = new ProgressMulticaster();
+
+        ProvisionTask(ProvisionTarget target) {
+            this.target = target;
+        }
+
+        @Override
+        public void run() {
+            File file;
+            try {
+                // 若 startFrida 正在下载同一目标，engine 会让本任务等待并转发那次下载的进度
+                file = engine.provision(target, listeners, bandwidth);
+            } catch (Exception e) {
+                fail(e);
+                return;
+            }
+            inFlight.remove(target, this); // 先移除再完成，避免后续批次拿到已结束的任务
+            future.complete(file);
+        }
+
+        void fail(Exception e) {
+            inFlight.remove(target, this);
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 去掉 CompletableFuture 包装的 CompletionException，取出真实异常
+     */
+    private static Exception unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof Exception ? (Exception) cause : new Exception(cause);
+    }
+
+    /**
+     * 单个批次的进度统计
+     */
+    private static class BatchProgress {
+        private final int total;
+        private final ProvisionCallback callback;
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicLong downloadedBytes = new AtomicLong();
+        private final AtomicLong totalBytes = new AtomicLong();
+        private final AtomicLong lastReportNanos = new AtomicLong();
+
+        BatchProgress(int total, ProvisionCallback callback) {
+            this.total = total;
+            this.callback = callback;
+        }
+
+        /**
+         * 把单个目标的进度累加到本批次统计中，每个目标各用一个实例
+         */
+        ProgressListener byteListener() {
+            return new ProgressListener() {
+                private long reported;          // 已计入批次的字节数
+                private boolean totalKnown;
+
+                @Override
+                public void onProgress(ProvisionTarget t, long downloaded, long total) {
+                    if (!totalKnown && total > 0) {
+                        totalKnown = true;
+                        totalBytes.addAndGet(total);
+                    }
+                    addDownloadedBytes(downloaded - reported);
+                    reported = downloaded;
+                }
+            };
+        }
+
+        private void addDownloadedBytes(long bytes) {
+            downloadedBytes.addAndGet(bytes);
+            // 限制回调频率，避免刷屏
+            long now = System.nanoTime();
+            long last = lastReportNanos.get();
+            if (now - last >= PROGRESS_INTERVAL_NANOS && lastReportNanos.compareAndSet(last, now)) {
+                report();
+            }
+        }
+
+        void finished(ProvisionTarget target, File file, boolean fromCache) {
+            completed.incrementAndGet();
+            if (callback != null) safely(() -> callback.onTargetFinished(target, file, fromCache));
+            report();
+        }
+
+        void failed(ProvisionTarget target, Throwable error) {
+            completed.incrementAndGet();
+            if (callback != null) safely(() -> callback.onTargetFailed(target, unwrap(error)));
+            report();
+        }
+
+        void batchFinished(BatchResult result) {
+            if (callback != null) safely(() -> callback.onBatchFinished(result));
+        }
+
+        private void report() {
+            if (callback != null) {
+                safely(() -> callback.onProgress(completed.get(), total, downloadedBytes.get(), totalBytes.get()));
+            }
+        }
+
+        /**
+         * 调用方回调抛出的异常直接忽略，不影响下载和批次结果
+         */
+        private static void safely(Runnable call) {
+            try {
+                call.run();
+            } catch (RuntimeException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 批次结果
+     */
+    public static class BatchResult {
+        final List<ProvisionTarget> downloaded = new ArrayList<>();
+        final List<ProvisionTarget> cached = new ArrayList<>();
+        final Map<ProvisionTarget, Exception> failed = new LinkedHashMap<>();
+
+        /** 本次实际下载的目标 */
+        public List<ProvisionTarget> getDownloaded() {
+            return Collections.unmodifiableList(downloaded);
+        }
+
+        /** 命中本地缓存而跳过的目标 */
+        public List<ProvisionTarget> getCached() {
+            return Collections.unmodifiableList(cached);
+        }
+
+        /** 失败的目标及原因 */
+        public Map<ProvisionTarget, Exception> getFailed() {
+            return Collections.unmodifiableMap(failed);
+        }
+
+        public boolean isSuccessful() {
+            return failed.isEmpty();
+        }
+    }
+
+    /**
+     * 批量下载回调接口（在工作线程调用）
+     */
+    public interface ProvisionCallback {
+        /** 整体进度：已完成目标数 / 总目标数，已下载字节 / 已知总字节 */
+        void onProgress(int completedTargets, int totalTargets, long downloadedBytes, long totalBytes);
+
+        /** 单个目标就绪，fromCache 表示命中本地缓存 */
+        void onTargetFinished(ProvisionTarget target, File file, boolean fromCache);
+
+        /** 单个目标失败 */
+        void onTargetFailed(ProvisionTarget target, Exception e);
+
+        /** 整批结束 */
+        void onBatchFinished(BatchResult result);
+    }
+}
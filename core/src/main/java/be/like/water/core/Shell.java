@@ -0,0 +1,29 @@
+package be.like.water.core;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Shell
+ * 在目标设备上执行命令的抽象
+ * - App 内使用 SuShell（本机 su -c）
+ * - 主机端工具可以实现为 adb -s serial shell su -c 加 adb push，从而同时管理多台设备
+ */
+public interface Shell {
+
+    /**
+     * 执行命令并等待结束，返回退出码和输出
+     */
+    ShellResult exec(String command) throws IOException, InterruptedException;
+
+    /**
+     * 启动命令但不等待（用于后台常驻进程，例如 frida-server）
+     */
+    void spawn(String command) throws IOException;
+
+    /**
+     * 把本地文件传到设备上的 remotePath
+     * 本机 shell 直接 cp，主机端 shell 需要真正传输（例如 adb push）
+     */
+    void push(File local, String remotePath) throws IOException, InterruptedException;
+}
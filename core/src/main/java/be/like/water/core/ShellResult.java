@@ -0,0 +1,33 @@
+package be.like.water.core;
+
+/**
+ * 命令执行结果
+ */
+public final class ShellResult {
+
+    private final int exitCode;
+    private final String stdout;
+    private final String stderr;
+
+    public ShellResult(int exitCode, String stdout, String stderr) {
+        this.exitCode = exitCode;
+        this.stdout = stdout == null ? "" : stdout;
+        this.stderr = stderr == null ? "" : stderr;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public String getStdout() {
+        return stdout;
+    }
+
+    public String getStderr() {
+        return stderr;
+    }
+
+    public boolean isSuccess() {
+        return exitCode == 0;
+    }
+}
@@ -0,0 +1,15 @@
+package be.like.water.core;
+
+/**
+ * SnapshotStore
+ * StateSnapshot 的持久化抽象，App 中基于 SharedPreferences 实现
+ */
+public interface SnapshotStore {
+
+    /**
+     * 读取上次保存的快照，没有时返回 StateSnapshot.EMPTY
+     */
+    StateSnapshot load();
+
+    void save(StateSnapshot snapshot);
+}
@@ -0,0 +1,98 @@
+package be.like.water.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * StateSnapshot
+ * frida-server 的最近已知状态：本地缓存的版本、设备上已安装的文件、运行中的 PID 和端口
+ * - 启动时先从 SnapshotStore 恢复上次保存的快照，UI 可以立即显示
+ * - validated 表示是否已在本次运行中通过 shell 重新确认（从存储恢复的快照总是 false）
+ * - 校验失败时保留上次的内容并附带 error，既不算已校验，也不应被持久化
+ */
+public final class StateSnapshot {
+
+    /** frida-server 默认监听端口 */
+    public static final int DEFAULT_PORT = 27042;
+
+    public static final StateSnapshot EMPTY = new StateSnapshot(Collections.emptyList(), null, -1, -1, 0, false);
+
+    private final List<ProvisionTarget> cachedTargets;
+    private final String installedBinary;
+    private final int pid;
+    private final int port;
+    private final long capturedAt;
+    private final boolean validated;
+    private final String error;
+
+    public StateSnapshot(List<ProvisionTarget> cachedTargets, String installedBinary,
+                         int pid, int port, long capturedAt, boolean validated) {
+        this(cachedTargets, installedBinary, pid, port, capturedAt, validated, null);
+    }
+
+    private StateSnapshot(List<ProvisionTarget> cachedTargets, String installedBinary,
+                          int pid, int port, long capturedAt, boolean validated, String error) {
+        this.cachedTargets = Collections.unmodifiableList(new ArrayList<>(cachedTargets));
+        this.installedBinary = installedBinary;
+        this.pid = pid;
+        this.port = port;
+        this.capturedAt = capturedAt;
+        this.validated = validated;
+        this.error = error;
+    }
+
+    /**
+     * 校验失败：保留当前内容，标记为未校验并附带失败原因
+     */
+    public StateSnapshot withError(String error) {
+        return new StateSnapshot(cachedTargets, installedBinary, pid, port, capturedAt, false, error);
+    }
+
+    /** 本地缓存中的目标 */
+    public List<ProvisionTarget> getCachedTargets() {
+        return cachedTargets;
+    }
+
+    /** 设备上已安装的 frida-server 文件名，没有时为 null */
+    public String getInstalledBinary() {
+        return installedBinary;
+    }
+
+    /** 运行中的 PID，未运行时为 -1 */
+    public int getPid() {
+        return pid;
+    }
+
+    /** 监听端口，未运行时为 -1 */
+    public int getPort() {
+        return port;
+    }
+
+    /** 采集时间（毫秒时间戳） */
+    public long getCapturedAt() {
+        return capturedAt;
+    }
+
+    public boolean isValidated() {
+        return validated;
+    }
+
+    /** 校验失败原因，没有失败时为 null */
+    public String getError() {
+        return error;
+    }
+
+    public boolean hasError() {
+        return error != null;
+    }
+
+    /** 已校验或校验已失败，不会再自动变化 */
+    public boolean isSettled() {
+        return validated || error != null;
+    }
+
+    public boolean isRunning() {
+        return pid > 0;
+    }
+}
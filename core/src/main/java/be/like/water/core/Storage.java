@@ -0,0 +1,27 @@
+package be.like.water.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Storage
+ * 本地缓存的抽象：决定每个目标的可执行文件放在哪里
+ */
+public interface Storage {
+
+    /** 目标解压后的可执行文件 */
+    File binaryFile(ProvisionTarget target);
+
+    /**
+     * 为目标新建一个临时文件（下载 / 解压中间产物），suffix 例如 ".xz.part"
+     * 每次调用返回不同的文件，并发下载互不影响
+     */
+    File createTempFile(ProvisionTarget target, String suffix) throws IOException;
+
+    /** 目标是否已缓存 */
+    boolean isCached(ProvisionTarget target);
+
+    /** 列出所有已缓存的目标 */
+    List<ProvisionTarget> cachedTargets();
+}
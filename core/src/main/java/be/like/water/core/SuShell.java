@@ -0,0 +1,72 @@
+package be.like.water.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * SuShell
+ * 通过本机 su -c 执行命令（需要 root）
+ */
+public class SuShell implements Shell {
+
+    @Override
+    public ShellResult exec(String command) throws IOException, InterruptedException {
+        Process p = Runtime.getRuntime().exec(new String[]{"su", "-c", command});
+        p.getOutputStream().close();
+
+        // stderr 放到单独线程读取，避免缓冲区写满导致进程阻塞
+        StreamCollector err = new StreamCollector(p.getErrorStream());
+        err.start();
+        String out = readFully(p.getInputStream());
+        int code = p.waitFor();
+        err.join();
+        return new ShellResult(code, out, err.result);
+    }
+
+    @Override
+    public void spawn(String command) throws IOException {
+        Runtime.getRuntime().exec(new String[]{"su", "-c", command});
+    }
+
+    /**
+     * 缓存和 shell 在同一台设备上，直接用 cp
+     */
+    @Override
+    public void push(File local, String remotePath) throws IOException, InterruptedException {
+        ShellResult cp = exec("cp " + local.getAbsolutePath() + " " + remotePath);
+        if (!cp.isSuccess()) {
+            throw new IOException("拷贝失败(" + cp.getExitCode() + "): " + cp.getStderr().trim());
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        try (InputStream is = in) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = is.read(buffer)) != -1) bos.write(buffer, 0, n);
+            return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class StreamCollector extends Thread {
+        private final InputStream in;
+        private volatile String result = "";
+
+        StreamCollector(InputStream in) {
+            super("su-stderr");
+            this.in = in;
+        }
+
+        @Override
+        public void run() {
+            try {
+                result = readFully(in);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
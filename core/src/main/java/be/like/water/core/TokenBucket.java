@@ -0,0 +1,71 @@
+package be.like.water.core;
+
+/**
+ * TokenBucket
+ * 令牌桶限速器，所有下载线程共享同一个实例即可实现全局带宽上限
+ * - 每秒补充 bytesPerSecond 个令牌（1 令牌 = 1 字节），桶容量为 capacity
+ * - acquire 在令牌不足时阻塞等待
+ * - bytesPerSecond <= 0 表示不限速
+ */
+public class TokenBucket {
+
+    private final long bytesPerSecond;
+    private final long capacity;
+
+    private double tokens;       // 当前可用令牌
+    private long lastRefillNanos; // 上次补充时间
+
+    public TokenBucket(long bytesPerSecond) {
+        // 默认容量为一秒的流量，允许短暂突发
+        this(bytesPerSecond, bytesPerSecond);
+    }
+
+    public TokenBucket(long bytesPerSecond, long capacity) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.capacity = Math.max(1, capacity);
+        this.tokens = this.capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public boolean isUnlimited() {
+        return bytesPerSecond <= 0;
+    }
+
+    /**
+     * 获取 permits 个令牌，不足时阻塞
+     * 单次请求大于桶容量时按容量分批获取，避免永远等不到
+     */
+    public void acquire(long permits) throws InterruptedException {
+        if (isUnlimited() || permits <= 0) return;
+
+        long remaining = permits;
+        while (remaining > 0) {
+            long chunk = Math.min(remaining, capacity);
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                if (tokens >= chunk) {
+                    tokens -= chunk;
+                    remaining -= chunk;
+                    continue;
+                }
+                // 计算还差多少令牌，需要等待多久
+                double missing = chunk - tokens;
+                waitNanos = (long) (missing * 1_000_000_000L / bytesPerSecond);
+            }
+            long millis = Math.max(1, waitNanos / 1_000_000L);
+            Thread.sleep(millis);
+        }
+    }
+
+    /**
+     * 按流逝时间补充令牌（调用方需持有锁）
+     */
+    private void refill() {
+        long now = System.nanoTime();
+        long elapsed = now - lastRefillNanos;
+        if (elapsed <= 0) return;
+        tokens = Math.min(capacity, tokens + elapsed * (double) bytesPerSecond / 1_000_000_000L);
+        lastRefillNanos = now;
+    }
+}
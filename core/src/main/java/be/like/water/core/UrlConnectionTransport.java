@@ -0,0 +1,55 @@
+package be.like.water.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * UrlConnectionTransport
+ * 基于 HttpURLConnection 的默认实现，不依赖任何第三方库
+ */
+public class UrlConnectionTransport implements HttpTransport {
+
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+
+    public UrlConnectionTransport() {
+        this(15_000, 30_000);
+    }
+
+    public UrlConnectionTransport(int connectTimeoutMs, int readTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+    }
+
+    @Override
+    public HttpResponse get(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(connectTimeoutMs);
+        conn.setReadTimeout(readTimeoutMs);
+        int code = conn.getResponseCode();
+
+        return new HttpResponse() {
+            @Override
+            public int code() {
+                return code;
+            }
+
+            @Override
+            public long contentLength() {
+                return conn.getContentLengthLong();
+            }
+
+            @Override
+            public InputStream body() throws IOException {
+                return conn.getInputStream();
+            }
+
+            @Override
+            public void close() {
+                conn.disconnect();
+            }
+        };
+    }
+}
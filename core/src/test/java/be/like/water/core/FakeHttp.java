@@ -0,0 +1,73 @@
+package be.like.water.core;
+
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内存 HttpTransport，所有地址都返回同一个响应体
+ * 设置 gate 后每个请求都会阻塞到 gate 被放开（或线程被中断）
+ */
+class FakeHttp implements HttpTransport {
+
+    final AtomicInteger requests = new AtomicInteger();
+    final CountDownLatch entered = new CountDownLatch(1); // 第一个请求已进入
+    volatile CountDownLatch gate;
+    volatile int code = 200;
+
+    private final byte[] body;
+
+    FakeHttp(byte[] body) {
+        this.body = body;
+    }
+
+    static byte[] xz(byte[] data) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (XZOutputStream out = new XZOutputStream(bos, new LZMA2Options())) {
+            out.write(data);
+        }
+        return bos.toByteArray();
+    }
+
+    @Override
+    public HttpResponse get(String url) throws IOException {
+        requests.incrementAndGet();
+        entered.countDown();
+        CountDownLatch g = gate;
+        if (g != null) {
+            try {
+                g.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("请求被中断");
+            }
+        }
+
+        return new HttpResponse() {
+            @Override
+            public int code() {
+                return code;
+            }
+
+            @Override
+            public long contentLength() {
+                return body.length;
+            }
+
+            @Override
+            public InputStream body() {
+                return new ByteArrayInputStream(body);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
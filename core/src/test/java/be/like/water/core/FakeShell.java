@@ -0,0 +1,40 @@
+package be.like.water.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 内存 Shell，记录执行过的命令，ps / ls 输出和是否拒绝 su 由测试设置
+ */
+class FakeShell implements Shell {
+    final List<String> commands = Collections.synchronizedList(new ArrayList<>());
+    final List<String> spawned = Collections.synchronizedList(new ArrayList<>());
+    final List<String> pushed = Collections.synchronizedList(new ArrayList<>());
+    volatile String psOutput = "";
+    volatile String lsOutput = "";
+    volatile boolean denied; // 模拟 su 被拒绝：所有命令都以 1 退出且没有输出
+
+    @Override
+    public ShellResult exec(String command) {
+        commands.add(command);
+        if (denied) return new ShellResult(1, "", "Permission denied");
+        if (command.startsWith("[ -f")) return new ShellResult(1, "", "");
+        if (command.contains("--frida-probe--")) {
+            return new ShellResult(0, psOutput + "--frida-probe--\n" + lsOutput, "");
+        }
+        if (command.startsWith("ps")) return new ShellResult(0, psOutput, "");
+        return new ShellResult(0, "", "");
+    }
+
+    @Override
+    public void spawn(String command) {
+        spawned.add(command);
+    }
+
+    @Override
+    public void push(File local, String remotePath) {
+        pushed.add(local.getAbsolutePath() + " -> " + remotePath);
+    }
+}
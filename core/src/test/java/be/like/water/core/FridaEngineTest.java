@@ -0,0 +1,233 @@
+package be.like.water.core;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * FridaEngine 的纯 JVM 单元测试
+ * Shell 和 HttpTransport 均为内存实现，不需要设备或网络
+ */
+public class FridaEngineTest {
+
+    private static final byte[] BINARY = "frida-server-binary".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private FakeHttp http;
+    private FakeShell shell;
+    private FridaEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        http = new FakeHttp(FakeHttp.xz(BINARY));
+        shell = new FakeShell();
+        engine = new FridaEngine(shell, http, new FileStorage(tmp.newFolder("frida")));
+    }
+
+    @Test
+    public void provision_downloadsDecompressesAndCaches() throws Exception {
+        ProvisionTarget target = new ProvisionTarget("17.3.2", "android", "arm64");
+
+        File file = engine.provision(target, null);
+
+        assertArrayEquals(BINARY, Files.readAllBytes(file.toPath()));
+        assertTrue(engine.getStorage().isCached(target));
+        assertArrayEquals(new String[]{file.getName()}, file.getParentFile().list()); // 临时文件已清理
+        assertEquals(Collections.singletonList(target), engine.getStorage().cachedTargets());
+
+        engine.provision(target, null);
+        assertEquals(1, http.requests.get()); // 第二次命中缓存，不再请求网络
+    }
+
+    @Test
+    public void provision_httpErrorLeavesNoCache() {
+        http.code = 404;
+        ProvisionTarget target = new ProvisionTarget("0.0.0", "android", "arm64");
+
+        try {
+            engine.provision(target, null);
+            fail("expected IOException");
+        } catch (Exception e) {
+            assertTrue(e instanceof IOException);
+        }
+        assertFalse(engine.getStorage().isCached(target));
+    }
+
+    @Test
+    public void provision_concurrentWithQueueDownloadsOnce() throws Exception {
+        ProvisionTarget target = new ProvisionTarget("17.3.2", "android", "arm64");
+        http.gate = new CountDownLatch(1);
+
+        ExecutorService direct = Executors.newSingleThreadExecutor();
+        ProvisioningQueue queue = new ProvisioningQueue(engine, 2, 0);
+        try {
+            Future<File> started = direct.submit(() -> engine.provision(target, null));
+            assertTrue(http.entered.await(5, TimeUnit.SECONDS));
+            Future<ProvisioningQueue.BatchResult> batch = queue.submit(Collections.singletonList(target), null);
+            Thread.sleep(200); // 让队列线程进入 provision 并等待同一个下载
+            http.gate.countDown();
+
+            File file = started.get(5, TimeUnit.SECONDS);
+            ProvisioningQueue.BatchResult result = batch.get(5, TimeUnit.SECONDS);
+
+            assertTrue(result.isSuccessful());
+            assertArrayEquals(BINARY, Files.readAllBytes(file.toPath()));
+            assertArrayEquals(new String[]{file.getName()}, file.getParentFile().list());
+            assertEquals(1, http.requests.get());
+        } finally {
+            direct.shutdownNow();
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void provision_waitingCallerReceivesSharedProgress() throws Exception {
+        ProvisionTarget target = new ProvisionTarget("17.3.2", "android", "arm64");
+        http.gate = new CountDownLatch(1);
+        long[] last = {0, 0};
+        File[] finished = new File[1];
+        ProgressListener waiter = new ProgressListener() {
+            @Override
+            public void onProgress(ProvisionTarget t, long downloaded, long total) {
+                last[0] = downloaded;
+                last[1] = total;
+            }
+
+            @Override
+            public void onFinished(ProvisionTarget t, File file) {
+                finished[0] = file;
+            }
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<File> owner = pool.submit(() -> engine.provision(target, null));
+            assertTrue(http.entered.await(5, TimeUnit.SECONDS));
+            Future<File> joined = pool.submit(() -> engine.provision(target, waiter));
+            Thread.sleep(200); // 让第二个调用方进入等待
+            http.gate.countDown();
+
+            assertEquals(owner.get(5, TimeUnit.SECONDS), joined.get(5, TimeUnit.SECONDS));
+            assertEquals(1, http.requests.get());
+            assertTrue(last[1] > 0);
+            assertEquals(last[1], last[0]);
+            assertEquals(joined.get(), finished[0]);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void start_installsAndFindsProcess() throws Exception {
+        ProvisionTarget target = new ProvisionTarget("17.3.2", "android", "x86_64");
+        shell.psOutput = "root  1234  1  0 0 S frida-server-17.3.2-android-x86_64\n";
+
+        List<String> lines = engine.start(target, null, (type, message) -> { });
+
+        assertEquals(1, lines.size());
+        File cached = engine.getStorage().binaryFile(target);
+        assertEquals(Collections.singletonList(cached.getAbsolutePath() + " -> " + engine.devicePath(target)), shell.pushed);
+        assertTrue(shell.commands.contains("chmod 755 " + engine.devicePath(target)));
+        assertEquals(Collections.singletonList(engine.devicePath(target) + " &"), shell.spawned);
+    }
+
+    @Test
+    public void probeState_parsesProcessAndInstalledBinary() throws Exception {
+        ProvisionTarget cached = new ProvisionTarget("17.3.2", "android", "arm64");
+        engine.provision(cached, null);
+        shell.psOutput = "  PID ARGS\n 4321 /data/local/tmp/frida-server-17.3.2-android-arm64\n"
+                + " 4400 grep frida-server\n";
+        shell.lsOutput = "frida-server-16.0.0-android-arm64\nfrida-server-17.3.2-android-arm64\n";
+
+        StateSnapshot state = engine.probeState();
+
+        assertTrue(state.isValidated());
+        assertEquals(4321, state.getPid());
+        assertEquals(StateSnapshot.DEFAULT_PORT, state.getPort());
+        assertEquals("frida-server-17.3.2-android-arm64", state.getInstalledBinary());
+        assertEquals(Collections.singletonList(cached), state.getCachedTargets());
+    }
+
+    @Test
+    public void probeState_readsListenPortFromArguments() throws Exception {
+        String[][] cases = {
+                {"-l 0.0.0.0:1234", "1234"},
+                {"-D --listen=127.0.0.1:31337", "31337"},
+                {"--listen [::1]:9999", "9999"},
+                {"-l0.0.0.0:4444", "4444"},
+                {"-l 0.0.0.0", String.valueOf(StateSnapshot.DEFAULT_PORT)},
+                {"-l ::1", String.valueOf(StateSnapshot.DEFAULT_PORT)},
+                {"-D", String.valueOf(StateSnapshot.DEFAULT_PORT)},
+        };
+        for (String[] c : cases) {
+            shell.psOutput = " 4321 /data/local/tmp/frida-server-17.3.2-android-arm64 " + c[0] + "\n";
+            assertEquals(c[0], Integer.parseInt(c[1]), engine.probeState().getPort());
+        }
+    }
+
+    @Test
+    public void probeState_notRunning() throws Exception {
+        StateSnapshot state = engine.probeState();
+
+        assertFalse(state.isRunning());
+        assertEquals(-1, state.getPort());
+        assertNull(state.getInstalledBinary());
+    }
+
+    @Test
+    public void refreshState_deniedSuKeepsPersistedSnapshot() throws Exception {
+        MemoryStore store = new MemoryStore();
+        shell.psOutput = " 4321 /data/local/tmp/frida-server-17.3.2-android-arm64\n";
+        StateSnapshot good = engine.refreshState(store);
+        assertTrue(good.isValidated());
+        assertSame(good, store.saved);
+
+        shell.denied = true; // Magisk 拒绝或授权超时
+        try {
+            engine.probeState();
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("1") && e.getMessage().contains("Permission denied"));
+        }
+
+        StateSnapshot state = engine.refreshState(store);
+        assertSame(good, store.saved); // 持久化的快照没有被覆盖
+        assertTrue(state.hasError());
+        assertFalse(state.isValidated());
+        assertEquals(4321, state.getPid());
+    }
+
+    /**
+     * 内存 SnapshotStore
+     */
+    private static class MemoryStore implements SnapshotStore {
+        volatile StateSnapshot saved = StateSnapshot.EMPTY;
+
+        @Override
+        public StateSnapshot load() {
+            return saved;
+        }
+
+        @Override
+        public void save(StateSnapshot snapshot) {
+            saved = snapshot;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package be.like.water.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.*;
+
+/**
+ * OkHttpTransport 单元测试，使用本地 MockWebServer，不访问外网
+ */
+public class OkHttpTransportTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private MockWebServer server;
+    private OkHttpTransport transport;
+    private final List<HttpCallMetrics> metrics = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        transport = OkHttpTransport.builder()
+                .cacheDir(tmp.newFolder("http"))
+                .maxCacheableBytes(1024)
+                .build();
+        transport.addMetricsListener(metrics::add);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void redirect_isResolvedOnceAndReused() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(302).setHeader("Location", "/cdn/frida.xz"));
+        server.enqueue(new MockResponse().setBody("first"));
+        server.enqueue(new MockResponse().setBody("second"));
+
+        String url = server.url("/releases/frida.xz").toString();
+        assertEquals("first", read(url));
+        assertEquals("second", read(url));
+
+        assertEquals(3, server.getRequestCount());
+        assertEquals("/releases/frida.xz", server.takeRequest().getPath());
+        assertEquals("/cdn/frida.xz", server.takeRequest().getPath());
+        assertEquals("/cdn/frida.xz", server.takeRequest().getPath()); // 第二次直接请求 CDN 地址
+    }
+
+    @Test
+    public void redirect_failedLocationFallsBackToOrigin() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(302).setHeader("Location", "/cdn/old"));
+        server.enqueue(new MockResponse().setBody("first"));
+        server.enqueue(new MockResponse().setResponseCode(403)); // CDN 签名过期
+        server.enqueue(new MockResponse().setResponseCode(302).setHeader("Location", "/cdn/new"));
+        server.enqueue(new MockResponse().setBody("second"));
+
+        String url = server.url("/releases/frida.xz").toString();
+        assertEquals("first", read(url));
+        assertEquals("second", read(url));
+
+        server.takeRequest();
+        server.takeRequest();
+        assertEquals("/cdn/old", server.takeRequest().getPath());
+        assertEquals("/releases/frida.xz", server.takeRequest().getPath());
+        assertEquals("/cdn/new", server.takeRequest().getPath());
+    }
+
+    @Test
+    public void redirect_expiresAfterTtl() throws Exception {
+        OkHttpTransport shortTtl = OkHttpTransport.builder().redirectTtlMs(50).build();
+        server.enqueue(new MockResponse().setResponseCode(302).setHeader("Location", "/cdn/old"));
+        server.enqueue(new MockResponse().setBody("first"));
+        server.enqueue(new MockResponse().setResponseCode(302).setHeader("Location", "/cdn/new"));
+        server.enqueue(new MockResponse().setBody("second"));
+
+        String url = server.url("/releases/frida.xz").toString();
+        assertEquals("first", read(shortTtl, url));
+        Thread.sleep(100); // 超过 TTL，重新请求原地址解析
+        assertEquals("second", read(shortTtl, url));
+
+        server.takeRequest();
+        server.takeRequest();
+        assertEquals("/releases/frida.xz", server.takeRequest().getPath());
+        assertEquals("/cdn/new", server.takeRequest().getPath());
+    }
+
+    @Test
+    public void redirect_unreachableLocationFallsBackToOrigin() throws Exception {
+        MockWebServer cdn = new MockWebServer();
+        cdn.enqueue(new MockResponse().setBody("first"));
+        cdn.start();
+        server.enqueue(new MockResponse().setResponseCode(302).setHeader("Location", cdn.url("/cdn/frida.xz")));
+        server.enqueue(new MockResponse().setBody("second"));
+
+        String url = server.url("/releases/frida.xz").toString();
+        assertEquals("first", read(url));
+        cdn.shutdown(); // 缓存的 CDN 地址不可达
+
+        assertEquals("second", read(url));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void diskCache_storesSmallResponsesOnly() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=60").setBody("{\"tag\":\"17.3.2\"}"));
+        String small = server.url("/releases/latest").toString();
+        assertEquals("{\"tag\":\"17.3.2\"}", read(small));
+        assertEquals("{\"tag\":\"17.3.2\"}", read(small));
+        assertEquals(1, server.getRequestCount());
+        assertTrue(metrics.get(metrics.size() - 1).isCacheHit());
+        assertFalse(metrics.get(metrics.size() - 1).isConnectionReused());
+        assertFalse(metrics.get(metrics.size() - 1).toString().contains("null"));
+
+        String large = new String(new char[2048]).replace('\0', 'x');
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=60").setBody(large));
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=60").setBody(large));
+        String bigUrl = server.url("/download/frida.xz").toString();
+        assertEquals(large, read(bigUrl));
+        assertEquals(large, read(bigUrl));
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void metrics_reportTimingAndConnectionReuse() throws Exception {
+        server.enqueue(new MockResponse().setBody("a"));
+        server.enqueue(new MockResponse().setBody("b"));
+
+        read(server.url("/a").toString());
+        read(server.url("/b").toString());
+
+        assertEquals(2, metrics.size());
+        HttpCallMetrics first = metrics.get(0);
+        HttpCallMetrics second = metrics.get(1);
+        assertFalse(first.isConnectionReused());
+        assertTrue(first.getConnectMs() >= 0);
+        assertTrue(first.getTtfbMs() >= 0);
+        assertTrue(first.getTotalMs() >= first.getTtfbMs());
+        assertEquals("http/1.1", first.getProtocol());
+        assertTrue(second.isConnectionReused()); // 连接池复用，没有新的连接阶段
+        assertEquals(-1, second.getConnectMs());
+        assertEquals(0, server.takeRequest().getSequenceNumber());
+        assertEquals(1, server.takeRequest().getSequenceNumber()); // 同一连接上的第二个请求
+    }
+
+    @Test
+    public void metrics_failureBeforeConnectIsNotReused() throws Exception {
+        try {
+            transport.get("http://frida-unresolvable.invalid/").close();
+            fail("expected IOException");
+        } catch (IOException expected) {
+        }
+
+        HttpCallMetrics failed = metrics.get(metrics.size() - 1);
+        assertTrue(failed.isFailed());
+        assertFalse(failed.isConnectionReused());
+        assertNull(failed.getProtocol());
+        assertFalse(failed.toString().contains("null"));
+    }
+
+    @Test
+    public void readTimeout_failsAndReportsMetrics() throws Exception {
+        OkHttpTransport slow = OkHttpTransport.builder().readTimeoutMs(200).build();
+        slow.addMetricsListener(metrics::add);
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+
+        try {
+            slow.get(server.url("/hang").toString()).close();
+            fail("expected SocketTimeoutException");
+        } catch (SocketTimeoutException expected) {
+        }
+        assertTrue(metrics.get(metrics.size() - 1).isFailed());
+    }
+
+    private String read(String url) throws IOException {
+        return read(transport, url);
+    }
+
+    private static String read(OkHttpTransport transport, String url) throws IOException {
+        try (HttpResponse response = transport.get(url); InputStream in = response.body()) {
+            assertEquals(200, response.code());
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
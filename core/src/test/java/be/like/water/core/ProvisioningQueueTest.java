@@ -0,0 +1,323 @@
+package be.like.water.core;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * ProvisioningQueue / TokenBucket 单元测试
+ */
+public class ProvisioningQueueTest {
+
+    private static final byte[] BINARY = "frida-server-binary".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private FakeHttp http;
+    private FridaEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        http = new FakeHttp(FakeHttp.xz(BINARY));
+        engine = new FridaEngine(new FakeShell(), http, new FileStorage(tmp.newFolder("frida")));
+    }
+
+    @Test
+    public void submit_deduplicatesAndSkipsCached() throws Exception {
+        ProvisionTarget cached = new ProvisionTarget("16.0.0", "android", "arm");
+        engine.provision(cached, null);
+        http.requests.set(0);
+
+        ProvisionTarget arm64 = new ProvisionTarget("17.3.2", "android", "arm64");
+        ProvisionTarget x86 = new ProvisionTarget("17.3.2", "android", "x86");
+        ProvisioningQueue queue = new ProvisioningQueue(engine, 2, 0);
+        try {
+            ProvisioningQueue.BatchResult result = queue
+                    .submit(Arrays.asList(arm64, x86, arm64, cached), null)
+                    .get(10, TimeUnit.SECONDS);
+
+            assertTrue(result.isSuccessful());
+            assertEquals(Collections.singletonList(cached), result.getCached());
+            assertEquals(2, result.getDownloaded().size());
+            assertEquals(2, http.requests.get());
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void submit_reportsCallbackEvents() throws Exception {
+        ProvisionTarget cached = new ProvisionTarget("16.0.0", "android", "arm");
+        engine.provision(cached, null);
+        ProvisionTarget arm64 = new ProvisionTarget("17.3.2", "android", "arm64");
+        ProvisionTarget x86 = new ProvisionTarget("17.3.2", "android", "x86");
+        ProvisioningQueue queue = new ProvisioningQueue(engine, 1, 0);
+        try {
+            RecordingCallback callback = new RecordingCallback();
+            ProvisioningQueue.BatchResult result = queue
+                    .submit(Arrays.asList(cached, arm64), callback)
+                    .get(5, TimeUnit.SECONDS);
+
+            assertEquals(Collections.singletonList(cached), callback.cached);
+            assertEquals(Collections.singletonList(arm64), callback.finished);
+            assertTrue(callback.failed.isEmpty());
+            assertEquals(Arrays.asList(1, 2), callback.completed.subList(callback.completed.size() - 2, callback.completed.size()));
+            assertEquals(2, callback.lastTotalTargets);
+            long expected = FakeHttp.xz(BINARY).length;
+            assertEquals(expected, callback.lastDownloadedBytes); // 命中缓存的目标不计字节
+            assertEquals(expected, callback.lastTotalBytes);
+            assertSame(result, callback.batchResult);
+
+            http.code = 404;
+            RecordingCallback failing = new RecordingCallback();
+            result = queue.submit(Collections.singletonList(x86), failing).get(5, TimeUnit.SECONDS);
+            assertEquals(Collections.singletonList(x86), failing.failed);
+            assertTrue(result.getFailed().get(x86) instanceof IOException);
+            assertSame(result, failing.batchResult);
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void submit_concurrentBatchesDownloadOnce() throws Exception {
+        http.gate = new CountDownLatch(1);
+        ProvisionTarget arm64 = new ProvisionTarget("17.3.2", "android", "arm64");
+        ProvisionTarget x86 = new ProvisionTarget("17.3.2", "android", "x86");
+        ProvisioningQueue queue = new ProvisioningQueue(engine, 4, 0);
+        ExecutorService submitters = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch ready = new CountDownLatch(2);
+            Callable<ProvisioningQueue.BatchResult> submit = () -> {
+                ready.countDown();
+                ready.await();
+                return queue.submit(Arrays.asList(arm64, x86), null).get(5, TimeUnit.SECONDS);
+            };
+            Future<ProvisioningQueue.BatchResult> a = submitters.submit(submit);
+            Future<ProvisioningQueue.BatchResult> b = submitters.submit(submit);
+            assertTrue(http.entered.await(5, TimeUnit.SECONDS));
+            Thread.sleep(200); // 两个批次都已提交
+            http.gate.countDown();
+
+            assertEquals(2, a.get(5, TimeUnit.SECONDS).getDownloaded().size());
+            assertEquals(2, b.get(5, TimeUnit.SECONDS).getDownloaded().size());
+            assertEquals(2, http.requests.get()); // 每个目标只下载一次
+        } finally {
+            submitters.shutdownNow();
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void submit_parallelDownloadsShareBandwidthLimit() throws Exception {
+        byte[] payload = new byte[16 * 1024];
+        new Random(42).nextBytes(payload); // 随机数据基本不可压缩
+        FakeHttp bigHttp = new FakeHttp(FakeHttp.xz(payload));
+        FridaEngine bigEngine = new FridaEngine(new FakeShell(), bigHttp, new FileStorage(tmp.newFolder("big")));
+        long bytesPerSecond = 16 * 1024;
+        ProvisioningQueue queue = new ProvisioningQueue(bigEngine, 2, bytesPerSecond);
+        try {
+            RecordingCallback callback = new RecordingCallback();
+            long start = System.nanoTime();
+            ProvisioningQueue.BatchResult result = queue.submit(Arrays.asList(
+                    new ProvisionTarget("17.3.2", "android", "arm64"),
+                    new ProvisionTarget("17.3.2", "android", "x86")), callback).get(10, TimeUnit.SECONDS);
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(result.isSuccessful());
+            assertEquals(2, bigHttp.requests.get());
+            // 初始满桶可以立即用掉一秒的额度，其余字节必须按限速等待
+            long expectedMs = (callback.lastDownloadedBytes - bytesPerSecond) * 1000 / bytesPerSecond;
+            assertTrue("elapsed " + elapsedMs + "ms, expected >= " + expectedMs + "ms", elapsedMs >= expectedMs * 8 / 10);
+            assertEquals(callback.lastTotalBytes, callback.lastDownloadedBytes);
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void submit_sharedDownloadReportsBytesToEveryBatch() throws Exception {
+        http.gate = new CountDownLatch(1);
+        ProvisionTarget arm64 = new ProvisionTarget("17.3.2", "android", "arm64");
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+        ProvisioningQueue queue = new ProvisioningQueue(engine, 2, 0);
+        try {
+            Future<ProvisioningQueue.BatchResult> a = queue.submit(Collections.singletonList(arm64), first);
+            assertTrue(http.entered.await(5, TimeUnit.SECONDS));
+            Future<ProvisioningQueue.BatchResult> b = queue.submit(Collections.singletonList(arm64), second);
+            http.gate.countDown();
+
+            assertEquals(Collections.singletonList(arm64), a.get(5, TimeUnit.SECONDS).getDownloaded());
+            assertEquals(Collections.singletonList(arm64), b.get(5, TimeUnit.SECONDS).getDownloaded());
+            assertEquals(1, http.requests.get()); // 两个批次共享一次下载
+
+            long expected = FakeHttp.xz(BINARY).length;
+            for (RecordingCallback callback : Arrays.asList(first, second)) {
+                assertEquals(expected, callback.lastDownloadedBytes);
+                assertEquals(expected, callback.lastTotalBytes);
+                assertEquals(Collections.singletonList(arm64), callback.finished);
+            }
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void submit_throwingCallbackDoesNotFailDownload() throws Exception {
+        ProvisionTarget arm64 = new ProvisionTarget("17.3.2", "android", "arm64");
+        AtomicInteger failures = new AtomicInteger();
+        AtomicInteger maxCompleted = new AtomicInteger();
+        ProvisioningQueue queue = new ProvisioningQueue(engine, 1, 0);
+        try {
+            ProvisioningQueue.BatchResult result = queue.submit(Collections.singletonList(arm64), new ProvisioningQueue.ProvisionCallback() {
+                @Override
+                public void onProgress(int completedTargets, int totalTargets, long downloadedBytes, long totalBytes) {
+                    maxCompleted.accumulateAndGet(completedTargets, Math::max);
+                    throw new IllegalStateException("progress");
+                }
+
+                @Override
+                public void onTargetFinished(ProvisionTarget target, File file, boolean fromCache) {
+                    throw new IllegalStateException("finished");
+                }
+
+                @Override
+                public void onTargetFailed(ProvisionTarget target, Exception e) {
+                    failures.incrementAndGet();
+                }
+
+                @Override
+                public void onBatchFinished(ProvisioningQueue.BatchResult result) {
+                    throw new IllegalStateException("batch");
+                }
+            }).get(5, TimeUnit.SECONDS);
+
+            assertTrue(result.isSuccessful());
+            assertEquals(Collections.singletonList(arm64), result.getDownloaded());
+            assertEquals(0, failures.get());
+            assertEquals(1, maxCompleted.get()); // 不会重复计数
+            assertTrue(queue.isCached(arm64));
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void shutdown_failsRunningAndPendingTargets() throws Exception {
+        http.gate = new CountDownLatch(1); // 第一个下载一直阻塞，第二个在队列中等待
+        ProvisionTarget arm64 = new ProvisionTarget("17.3.2", "android", "arm64");
+        ProvisionTarget x86 = new ProvisionTarget("17.3.2", "android", "x86");
+        ProvisioningQueue queue = new ProvisioningQueue(engine, 1, 0);
+
+        Future<ProvisioningQueue.BatchResult> batch = queue.submit(Arrays.asList(arm64, x86), null);
+        assertTrue(http.entered.await(5, TimeUnit.SECONDS));
+        queue.shutdown();
+
+        ProvisioningQueue.BatchResult result = batch.get(5, TimeUnit.SECONDS);
+        assertEquals(2, result.getFailed().size());
+        assertTrue(result.getDownloaded().isEmpty());
+    }
+
+    @Test
+    public void submit_afterShutdownFailsImmediately() throws Exception {
+        ProvisioningQueue queue = new ProvisioningQueue(engine, 1, 0);
+        queue.shutdown();
+
+        ProvisionTarget arm64 = new ProvisionTarget("17.3.2", "android", "arm64");
+        ProvisioningQueue.BatchResult result = queue
+                .submit(Collections.singletonList(arm64), null)
+                .get(5, TimeUnit.SECONDS);
+
+        assertTrue(result.getFailed().get(arm64) instanceof IllegalStateException);
+        assertEquals(0, http.requests.get());
+    }
+
+    @Test
+    public void target_rejectsUnsafeParts() {
+        for (String bad : new String[]{"..", ".", "17.3.2;reboot", "17 3", "a/b", "$(id)", "a&b", "a,b"}) {
+            try {
+                new ProvisionTarget(bad, "android", "arm64");
+                fail("expected IllegalArgumentException: " + bad);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        assertNull(ProvisionTarget.parse("../android/arm64"));
+        assertEquals("frida-server-17.3.2-android-x86_64", new ProvisionTarget(" 17.3.2 ", "android", "x86_64").fileName());
+    }
+
+    @Test
+    public void tokenBucket_limitsThroughput() throws Exception {
+        TokenBucket bucket = new TokenBucket(10_000);
+        long start = System.nanoTime();
+        bucket.acquire(10_000); // 初始满桶，立即获得
+        bucket.acquire(5_000);  // 需要等待约 0.5s
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("elapsed " + elapsedMs, elapsedMs >= 400);
+    }
+
+    @Test
+    public void tokenBucket_unlimitedNeverBlocks() throws Exception {
+        TokenBucket bucket = new TokenBucket(0);
+        long start = System.nanoTime();
+        bucket.acquire(Long.MAX_VALUE);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+    }
+
+    /**
+     * 记录所有回调事件
+     */
+    private static class RecordingCallback implements ProvisioningQueue.ProvisionCallback {
+        final List<ProvisionTarget> finished = new CopyOnWriteArrayList<>();
+        final List<ProvisionTarget> cached = new CopyOnWriteArrayList<>();
+        final List<ProvisionTarget> failed = new CopyOnWriteArrayList<>();
+        final List<Integer> completed = new CopyOnWriteArrayList<>();
+        volatile int lastTotalTargets;
+        volatile long lastDownloadedBytes;
+        volatile long lastTotalBytes;
+        volatile ProvisioningQueue.BatchResult batchResult;
+
+        @Override
+        public void onProgress(int completedTargets, int totalTargets, long downloadedBytes, long totalBytes) {
+            completed.add(completedTargets);
+            lastTotalTargets = totalTargets;
+            lastDownloadedBytes = downloadedBytes;
+            lastTotalBytes = totalBytes;
+        }
+
+        @Override
+        public void onTargetFinished(ProvisionTarget target, File file, boolean fromCache) {
+            (fromCache ? cached : finished).add(target);
+        }
+
+        @Override
+        public void onTargetFailed(ProvisionTarget target, Exception e) {
+            failed.add(target);
+        }
+
+        @Override
+        public void onBatchFinished(ProvisioningQueue.BatchResult result) {
+            batchResult = result;
+        }
+    }
+}